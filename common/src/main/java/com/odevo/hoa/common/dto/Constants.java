@@ -12,8 +12,21 @@ public final class Constants {
     public static final String RABBITMQ_QUEUE_NAME = "pdf-processing-queue";
     public static final String RABBITMQ_ROUTING_KEY = "pdf.process";
 
+    // Low-priority lane used for re-extraction backfills, kept apart from live uploads
+    public static final String RABBITMQ_BACKFILL_QUEUE_NAME = "pdf-backfill-queue";
+    public static final String RABBITMQ_BACKFILL_ROUTING_KEY = "pdf.backfill";
+
+    // Deliveries deferred while another attempt holds the processing lease wait here, then return to their queue
+    public static final String RABBITMQ_RETRY_EXCHANGE_NAME = "pdf-retry-exchange";
+    public static final String RABBITMQ_RETRY_QUEUE_NAME = "pdf-retry-queue";
+
     public static final String MINIO_BUCKET_NAME = "pdf-uploads";
 
     public static final String GEMINI_API_BASE_URL = "https://generativelanguage.googleapis.com/v1beta";
     public static final String GEMINI_MODEL = "gemini-2.0-flash"; // Or other suitable model
+
+    // Bump whenever the extraction schema/prompt in GeminiService changes
+    public static final int EXTRACTION_SCHEMA_VERSION = 2;
+    // Recorded on every extracted_data row; rows with a different value are re-extracted by the backfill
+    public static final String EXTRACTION_VERSION = GEMINI_MODEL + "/schema-v" + EXTRACTION_SCHEMA_VERSION;
 }
@@ -0,0 +1,28 @@
+package com.odevo.hoa.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * DTO describing a direct upload of a PDF to MinIO.
+ * The client PUTs the file to `uploadUrl` with exactly the `uploadHeaders`, then confirms the upload with
+ * `POST /api/pdfs/uploads/{uploadId}/complete`. `uploadUrl` is null if no upload is needed: the content was
+ * already extracted (`deduplicated`) or is already stored, in which case the upload only has to be confirmed.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectUploadDto implements Serializable {
+    private UUID uploadId;
+    private String pdfFileName;
+    private boolean deduplicated;
+    private String uploadUrl;
+    private Map<String, String> uploadHeaders;
+    private Instant expiresAt;
+}
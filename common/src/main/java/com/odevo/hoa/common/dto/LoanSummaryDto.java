@@ -0,0 +1,22 @@
+package com.odevo.hoa.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+
+/**
+ * DTO representing aggregated loan figures, per association and year or per year across all associations.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanSummaryDto implements Serializable {
+    private String association; // null for aggregates across all associations
+    private int financialYear;
+    private long loanCount;
+    private BigDecimal totalDebt;
+    private BigDecimal weightedInterestRate; // In percent, weighted by debt, null if no loan states a rate
+}
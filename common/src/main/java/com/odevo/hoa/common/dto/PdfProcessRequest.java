@@ -17,4 +17,5 @@ public class PdfProcessRequest implements Serializable {
     private String pdfFileName;
     private String originalFileName; // To keep track of the file's original name
     private String bucketName;
+    private String associationId; // Tenant the request is scheduled under, null if the upload named no association
 }
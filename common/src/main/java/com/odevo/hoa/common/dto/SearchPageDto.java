@@ -0,0 +1,20 @@
+package com.odevo.hoa.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * DTO representing one page of ranked search results.
+ * `nextCursor` is passed back to fetch the following page, it is null on the last page.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchPageDto implements Serializable {
+    private List<SearchResultDto> results;
+    private String nextCursor;
+}
@@ -0,0 +1,22 @@
+package com.odevo.hoa.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * DTO representing a single full-text search hit, with a highlighted excerpt of the summary.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResultDto implements Serializable {
+    private String id;
+    private String pdfFileName;
+    private String originalFileName;
+    private String title;
+    private float rank;
+    private String headline; // Summary excerpt with matches wrapped in <mark></mark>
+}
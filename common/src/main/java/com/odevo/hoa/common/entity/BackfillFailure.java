@@ -0,0 +1,39 @@
+package com.odevo.hoa.common.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+
+/**
+ * JPA Entity counting the failed re-extractions of a PDF by the backfill.
+ * Failures are recorded with plain SQL (see the worker's BackfillFailureRepository).
+ */
+@Entity
+@Table(name = "backfill_failure")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class BackfillFailure {
+
+    @Id
+    @Column(name = "pdf_file_name")
+    private String pdfFileName;
+
+    // The extraction version the attempts were made with
+    @Column(name = "extraction_version", nullable = false)
+    private String extractionVersion;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "failed_at", nullable = false)
+    private OffsetDateTime failedAt;
+}
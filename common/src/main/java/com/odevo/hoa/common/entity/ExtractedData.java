@@ -14,6 +14,7 @@ import java.util.UUID;
 /**
  * JPA Entity for storing extracted JSON data from PDFs.
  * The `jsonData` field uses `jsonb` type in PostgreSQL.
+ * The table is partitioned by month on `extractionTimestamp`, look rows up through their `ExtractedDataLookup`.
  */
 @Entity
 @Table(name = "extracted_data")
@@ -27,7 +28,7 @@ public class ExtractedData {
     @GeneratedValue(strategy = GenerationType.UUID)
     private UUID id;
 
-    @Column(name = "pdf_file_name", nullable = false, unique = true)
+    @Column(name = "pdf_file_name", nullable = false) // unique across partitions through ExtractedDataLookup
     private String pdfFileName;
 
     @Column(name = "original_file_name")
@@ -41,6 +42,10 @@ public class ExtractedData {
     @Column(name = "extraction_timestamp", nullable = false)
     private LocalDateTime extractionTimestamp;
 
+    // Model/schema combination that produced jsonData, see Constants.EXTRACTION_VERSION
+    @Column(name = "extraction_version")
+    private String extractionVersion;
+
     // Optional: Reference to VectorData if it's a one-to-one relationship
     // For simplicity, we'll keep vector_data directly in this table as a String for now
     @Column(name = "vector_data")
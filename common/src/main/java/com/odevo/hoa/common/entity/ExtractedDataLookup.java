@@ -0,0 +1,38 @@
+package com.odevo.hoa.common.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * JPA Entity for the file name lookup of the partitioned `extracted_data` table.
+ * Maintained by a database trigger, it enforces the uniqueness of `pdfFileName` across partitions and records
+ * the partition key of each row, so lookups by file name only touch a single partition.
+ */
+@Entity
+@Table(name = "extracted_data_lookup")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ExtractedDataLookup {
+
+    @Id
+    @Column(name = "pdf_file_name")
+    private String pdfFileName;
+
+    @Column(name = "id", nullable = false, unique = true)
+    private UUID id;
+
+    @Column(name = "extraction_timestamp", nullable = false)
+    private OffsetDateTime extractionTimestamp;
+
+    // Name of the partition the row was archived with, null while the row is still in the database
+    @Column(name = "archived_partition")
+    private String archivedPartition;
+}
@@ -0,0 +1,36 @@
+package com.odevo.hoa.common.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA Entity storing the last processed position of a long running background job,
+ * so that the job can resume where it left off after a restart.
+ */
+@Entity
+@Table(name = "job_checkpoint")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class JobCheckpoint {
+
+    @Id
+    @Column(name = "job_name")
+    private String jobName;
+
+    // Job specific position, e.g. the last visited id of a keyset scan
+    @Column(name = "position")
+    private String position;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
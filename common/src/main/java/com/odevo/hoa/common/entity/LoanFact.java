@@ -0,0 +1,43 @@
+package com.odevo.hoa.common.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+/**
+ * JPA Entity for a single loan of an extraction, with the figures of `json_data.loans` parsed into numbers.
+ * Written by the worker together with the extraction, and the source of the `LoanSummary` aggregates.
+ */
+@Entity
+@Table(name = "loan_fact")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoanFact {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "extracted_data_id", nullable = false)
+    private UUID extractedDataId;
+
+    @Column(name = "association", nullable = false)
+    private String association;
+
+    @Column(name = "financial_year", nullable = false)
+    private int financialYear;
+
+    @Column(name = "debt", nullable = false)
+    private BigDecimal debt;
+
+    // In percent, null when the report does not state it
+    @Column(name = "interest_rate")
+    private BigDecimal interestRate;
+}
@@ -0,0 +1,45 @@
+package com.odevo.hoa.common.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * JPA Entity for the pre-aggregated loan figures of one association and financial year.
+ * Maintained incrementally by the worker, read by the analytics endpoints of the service.
+ */
+@Entity
+@Table(name = "loan_summary")
+@IdClass(LoanSummaryId.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class LoanSummary {
+
+    @Id
+    @Column(name = "association")
+    private String association;
+
+    @Id
+    @Column(name = "financial_year")
+    private int financialYear;
+
+    @Column(name = "loan_count", nullable = false)
+    private long loanCount;
+
+    @Column(name = "total_debt", nullable = false)
+    private BigDecimal totalDebt;
+
+    // Debt of the loans with a known interest rate
+    @Column(name = "rated_debt", nullable = false)
+    private BigDecimal ratedDebt;
+
+    // Sum of debt * interest rate, divided by ratedDebt this gives the weighted interest rate
+    @Column(name = "rate_weighted_debt", nullable = false)
+    private BigDecimal rateWeightedDebt;
+}
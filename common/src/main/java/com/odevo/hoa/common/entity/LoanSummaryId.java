@@ -0,0 +1,18 @@
+package com.odevo.hoa.common.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * Composite primary key of `LoanSummary`.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoanSummaryId implements Serializable {
+    private String association;
+    private int financialYear;
+}
@@ -0,0 +1,49 @@
+package com.odevo.hoa.common.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * JPA Entity recording a single PDF upload.
+ * PDFs are content addressed: `pdfFileName` is the SHA-256 of the file, so repeated uploads of the same
+ * document link to the same MinIO object and the same `ExtractedData` row.
+ */
+@Entity
+@Table(name = "pdf_upload")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class PdfUpload {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.UUID)
+    private UUID id;
+
+    @Column(name = "pdf_file_name", nullable = false)
+    private String pdfFileName;
+
+    @Column(name = "original_file_name")
+    private String originalFileName;
+
+    // Association (tenant) named by the uploader, extractions are scheduled fairly across associations
+    @Column(name = "association_id")
+    private String associationId;
+
+    // True if an extraction already existed, so neither storage nor processing was needed
+    @Column(name = "deduplicated", nullable = false)
+    private boolean deduplicated;
+
+    @Column(name = "upload_timestamp", nullable = false)
+    private LocalDateTime uploadTimestamp;
+
+    // Null while a direct upload to MinIO has not been confirmed by the client
+    @Column(name = "completed_timestamp")
+    private LocalDateTime completedTimestamp;
+}
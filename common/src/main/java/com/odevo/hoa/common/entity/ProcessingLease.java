@@ -0,0 +1,46 @@
+package com.odevo.hoa.common.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * JPA Entity for the lease an extraction attempt holds on a PDF while processing it.
+ * Leases are taken and renewed with plain SQL (see the worker's ProcessingLeaseRepository).
+ */
+@Entity
+@Table(name = "processing_lease")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ProcessingLease {
+
+    @Id
+    @Column(name = "pdf_file_name")
+    private String pdfFileName;
+
+    // Identifies the attempt holding the lease
+    @Column(name = "token", nullable = false)
+    private UUID token;
+
+    @Column(name = "owner", nullable = false)
+    private String owner;
+
+    @Column(name = "acquired_at", nullable = false)
+    private OffsetDateTime acquiredAt;
+
+    @Column(name = "heartbeat_at", nullable = false)
+    private OffsetDateTime heartbeatAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private OffsetDateTime expiresAt;
+}
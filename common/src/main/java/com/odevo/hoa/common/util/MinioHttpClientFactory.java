@@ -0,0 +1,67 @@
+package com.odevo.hoa.common.util;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.minio.http.HttpUtils;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the OkHttp client of the MinIO clients in the service and the worker.
+ * The MinIO client runs its requests on OkHttp's dispatcher, which by default allows only 5 concurrent requests
+ * per host, so the dispatcher and the connection pool are sized by the callers' `minio.http.*` settings.
+ * The pool and the dispatcher are exposed as `hoa.minio.http.*` metrics.
+ */
+public final class MinioHttpClientFactory {
+
+    private MinioHttpClientFactory() {
+    }
+
+    /**
+     * Starts from the MinIO default client, which keeps its handling of SSL_CERT_FILE, and replaces the pool, the
+     * dispatcher and the timeouts. HTTP/2 is only negotiated over TLS, the MinIO client itself defaults to HTTP/1.1.
+     *
+     * @param meterRegistry        The registry of the connection and request gauges.
+     * @param maxRequests          Concurrent requests, all to the one MinIO host.
+     * @param maxIdleConnections   Idle connections kept in the pool.
+     * @param keepAliveMillis      How long an idle connection is kept.
+     * @param connectTimeoutMillis Connect timeout.
+     * @param readTimeoutMillis    Read timeout.
+     * @param writeTimeoutMillis   Write timeout.
+     * @param http2                Whether to offer HTTP/2.
+     * @return The client to build the MinioClient with.
+     */
+    public static OkHttpClient create(MeterRegistry meterRegistry, int maxRequests, int maxIdleConnections, long keepAliveMillis,
+                                      long connectTimeoutMillis, long readTimeoutMillis, long writeTimeoutMillis, boolean http2) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequests); // there is only one host
+        ConnectionPool connectionPool = new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS);
+
+        OkHttpClient httpClient = HttpUtils.newDefaultHttpClient(connectTimeoutMillis, writeTimeoutMillis, readTimeoutMillis)
+                .newBuilder()
+                .dispatcher(dispatcher)
+                .connectionPool(connectionPool)
+                .protocols(http2 ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1) : List.of(Protocol.HTTP_1_1))
+                .build();
+
+        Gauge.builder("hoa.minio.http.connections", connectionPool, ConnectionPool::connectionCount)
+                .description("Open connections to MinIO")
+                .register(meterRegistry);
+        Gauge.builder("hoa.minio.http.connections.idle", connectionPool, ConnectionPool::idleConnectionCount)
+                .description("Idle connections to MinIO")
+                .register(meterRegistry);
+        Gauge.builder("hoa.minio.http.requests.running", dispatcher, Dispatcher::runningCallsCount)
+                .description("MinIO requests in progress")
+                .register(meterRegistry);
+        Gauge.builder("hoa.minio.http.requests.queued", dispatcher, Dispatcher::queuedCallsCount)
+                .description("MinIO requests waiting for the dispatcher (minio.http.max-requests)")
+                .register(meterRegistry);
+        return httpClient;
+    }
+}
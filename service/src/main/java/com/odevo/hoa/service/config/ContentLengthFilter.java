@@ -0,0 +1,41 @@
+package com.odevo.hoa.service.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+
+/**
+ * Buffers responses so they are sent with a Content-Length instead of chunked.
+ * Tomcat only applies `server.compression.min-response-size` to responses of known length, so without it
+ * even tiny JSON responses are gzip compressed. Only meant for endpoints with bounded response sizes.
+ * Like Spring's ShallowEtagHeaderFilter, the buffer of an async request is written after the async dispatch.
+ */
+public class ContentLengthFilter extends OncePerRequestFilter {
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        HttpServletResponse responseToUse = response;
+        if (!isAsyncDispatch(request) && !(response instanceof ContentCachingResponseWrapper)) {
+            responseToUse = new ContentCachingResponseWrapper(response);
+        }
+        filterChain.doFilter(request, responseToUse);
+        if (!isAsyncStarted(request)) {
+            ContentCachingResponseWrapper wrapper = WebUtils.getNativeResponse(responseToUse, ContentCachingResponseWrapper.class);
+            if (wrapper != null) {
+                wrapper.copyBodyToResponse();
+            }
+        }
+    }
+}
@@ -1,13 +1,20 @@
 package com.odevo.hoa.service.config;
 
+import com.odevo.hoa.common.util.MinioHttpClientFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.minio.MinioClient;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 
 /**
  * Configuration for MinIO client in the service.
  * This client will be used to upload files to the MinIO server.
+ * A second client signs the presigned URLs handed out to clients, with the endpoint they reach MinIO at
+ * (`minio.public-url`), since the host is part of the signature.
+ * Its OkHttp client is built by MinioHttpClientFactory, sized by `minio.http.*` for the concurrent uploads.
  */
 @Configuration
 public class MinioConfig {
@@ -21,11 +28,46 @@ public class MinioConfig {
     @Value("${minio.secretKey}")
     private String minioSecretKey;
 
+    @Value("${minio.public-url:${minio.url}}")
+    private String minioPublicUrl;
+
+    // With a fixed region, presigning does not have to ask MinIO for the bucket location
+    @Value("${minio.region:us-east-1}")
+    private String minioRegion;
+
     @Bean
-    public MinioClient minioClient() {
+    @Primary
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         return MinioClient.builder()
                 .endpoint(minioUrl)
                 .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
                 .build();
     }
+
+    @Bean
+    public MinioClient presignMinioClient(OkHttpClient minioHttpClient) {
+        return MinioClient.builder()
+                .endpoint(minioPublicUrl)
+                .region(minioRegion)
+                .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
+                .build();
+    }
+
+    /**
+     * OkHttp client shared by both MinIO clients, see MinioHttpClientFactory.
+     */
+    @Bean
+    public OkHttpClient minioHttpClient(MeterRegistry meterRegistry,
+                                        @Value("${minio.http.max-requests:64}") int maxRequests,
+                                        @Value("${minio.http.max-idle-connections:16}") int maxIdleConnections,
+                                        @Value("${minio.http.keep-alive-ms:60000}") long keepAliveMillis,
+                                        @Value("${minio.http.connect-timeout-ms:5000}") long connectTimeoutMillis,
+                                        @Value("${minio.http.read-timeout-ms:60000}") long readTimeoutMillis,
+                                        @Value("${minio.http.write-timeout-ms:60000}") long writeTimeoutMillis,
+                                        @Value("${minio.http.http2:false}") boolean http2) {
+        return MinioHttpClientFactory.create(meterRegistry, maxRequests, maxIdleConnections, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, writeTimeoutMillis, http2);
+    }
 }
@@ -0,0 +1,111 @@
+package com.odevo.hoa.service.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource for read-only work, load balancing round-robin over the configured read replicas.
+ * The replication lag of every replica is checked periodically; replicas that lag more than the configured
+ * maximum, or cannot be reached, are skipped. Without any healthy replica, connections come from the primary.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements DisposableBean {
+
+    // 0 on a primary or a replica streaming from it that has replayed everything it received. Otherwise the age of
+    // the last replayed transaction, infinite if there is none: a replica cut off from its primary has replayed all
+    // it received too. The receiver status is only visible with pg_read_all_stats, a running receiver counts then.
+    private static final String LAG_QUERY = "SELECT CASE "
+            + "WHEN NOT pg_is_in_recovery() THEN 0 "
+            + "WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() "
+            + "AND EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE COALESCE(status, 'streaming') = 'streaming') THEN 0 "
+            + "ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())::float8, 'Infinity'::float8) END";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final double maxLagSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<DataSource> replicaDataSources, double maxLagSeconds) {
+        this.primary = primary;
+        this.replicas = replicaDataSources.stream().map(Replica::new).toList();
+        this.maxLagSeconds = maxLagSeconds;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return select().getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return select().getConnection(username, password);
+    }
+
+    private DataSource select() {
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                return replica.dataSource;
+            }
+        }
+        return primary;
+    }
+
+    /**
+     * Refreshes the health of every replica from its current replication lag.
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(LAG_QUERY)) {
+                resultSet.next();
+                double lagSeconds = resultSet.getDouble(1);
+                healthy = lagSeconds <= maxLagSeconds;
+                if (!healthy) {
+                    log.warn("Read replica {} lags {} seconds behind, reads fall back to other replicas or the primary.",
+                            replica.dataSource, lagSeconds);
+                }
+            } catch (SQLException e) {
+                healthy = false;
+                log.warn("Read replica {} unavailable: {}", replica.dataSource, e.getMessage());
+            }
+            if (healthy != replica.healthy) {
+                log.info("Read replica {} is now {}.", replica.dataSource, healthy ? "in use" : "out of rotation");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private static final class Replica {
+        private final DataSource dataSource;
+        private volatile boolean healthy; // Out of rotation until the first lag check succeeded
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
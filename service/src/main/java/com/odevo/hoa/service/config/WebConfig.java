@@ -0,0 +1,34 @@
+package com.odevo.hoa.service.config;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+
+/**
+ * Configuration of servlet filters and request execution in the service.
+ */
+@Configuration
+public class WebConfig {
+
+    /**
+     * Single extractions are small enough to buffer, so `server.compression.min-response-size` applies to them.
+     * The list of all extractions stays streamed (and always compressed).
+     */
+    @Bean
+    public FilterRegistrationBean<ContentLengthFilter> contentLengthFilter() {
+        FilterRegistrationBean<ContentLengthFilter> registration = new FilterRegistrationBean<>(new ContentLengthFilter());
+        registration.addUrlPatterns("/api/pdfs/data/*");
+        return registration;
+    }
+
+    /**
+     * Applied by Spring Boot to the `applicationTaskExecutor` running the async controller methods, so they continue
+     * the trace of the HTTP request (and the RabbitMQ message they publish carries it on).
+     */
+    @Bean
+    public TaskDecorator contextPropagatingTaskDecorator() {
+        return new ContextPropagatingTaskDecorator();
+    }
+}
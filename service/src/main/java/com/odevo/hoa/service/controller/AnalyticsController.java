@@ -0,0 +1,68 @@
+package com.odevo.hoa.service.controller;
+
+import com.odevo.hoa.common.dto.LoanSummaryDto;
+import com.odevo.hoa.service.service.AnalyticsService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * REST Controller for analytics over the extracted data.
+ * All endpoints read pre-aggregated tables only.
+ */
+@RestController
+@RequestMapping("/api/analytics")
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsController {
+
+    private final AnalyticsService analyticsService;
+    private final AsyncTaskExecutor applicationTaskExecutor; // Spring Boot's executor, carries the trace context along
+
+    /**
+     * Endpoint to get loan count, total debt and weighted interest rate per association and year.
+     *
+     * @param association   Optional association to filter on.
+     * @param financialYear Optional year to filter on.
+     * @return List of LoanSummaryDto.
+     */
+    @GetMapping("/loans")
+    public CompletableFuture<ResponseEntity<List<LoanSummaryDto>>> getLoanSummaries(
+            @RequestParam(value = "association", required = false) String association,
+            @RequestParam(value = "year", required = false) Integer financialYear) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return new ResponseEntity<>(analyticsService.getLoanSummaries(association, financialYear), HttpStatus.OK);
+            } catch (Exception e) {
+                log.error("Error retrieving loan summaries: {}", e.getMessage(), e);
+                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }, applicationTaskExecutor);
+    }
+
+    /**
+     * Endpoint to get loan count, total debt and weighted interest rate per year across all associations.
+     *
+     * @return List of LoanSummaryDto without association.
+     */
+    @GetMapping("/loans/yearly")
+    public CompletableFuture<ResponseEntity<List<LoanSummaryDto>>> getYearlyLoanTotals() {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return new ResponseEntity<>(analyticsService.getYearlyLoanTotals(), HttpStatus.OK);
+            } catch (Exception e) {
+                log.error("Error retrieving yearly loan totals: {}", e.getMessage(), e);
+                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }, applicationTaskExecutor);
+    }
+}
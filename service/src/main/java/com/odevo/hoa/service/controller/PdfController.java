@@ -1,29 +1,49 @@
 package com.odevo.hoa.service.controller;
 
+import com.odevo.hoa.common.dto.DirectUploadDto;
 import com.odevo.hoa.common.dto.ExtractedDataDto;
-import com.odevo.hoa.common.dto.PdfProcessRequest;
+import com.odevo.hoa.common.dto.SearchPageDto;
+import com.odevo.hoa.common.entity.ExtractedData;
+import com.odevo.hoa.common.entity.PdfUpload;
 import com.odevo.hoa.common.util.Constants;
 import com.odevo.hoa.service.service.DataQueryService;
-import com.odevo.hoa.service.service.MessageProducer;
 import com.odevo.hoa.service.service.MinioService;
+import com.odevo.hoa.service.service.PdfUploadService;
+import com.odevo.hoa.service.service.UploadAdmissionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * REST Controller for handling PDF operations.
  * Provides endpoints for uploading PDFs and querying extracted data.
+ * Extracted data is served with ETags and Last-Modified taken from the extraction lookup, so conditional
+ * requests of unchanged data are answered with 304 before any JSONB is loaded. The ETags are weak: they name the
+ * version of the data, not the bytes, which differ once the response is gzip compressed (`server.compression`).
+ * Uploads are subject to admission control (see UploadAdmissionService): while the workers are too far behind,
+ * they are rejected with 429 and a Retry-After before anything is stored.
  */
 @RestController
 @RequestMapping("/api/pdfs")
@@ -31,19 +51,31 @@ import java.util.concurrent.CompletableFuture;
 @Slf4j
 public class PdfController {
 
+    private static final int MAX_ASSOCIATION_ID_LENGTH = 255;
+
     private final MinioService minioService;
-    private final MessageProducer messageProducer;
+    private final PdfUploadService pdfUploadService;
     private final DataQueryService dataQueryService;
+    private final UploadAdmissionService uploadAdmissionService;
+    private final AsyncTaskExecutor applicationTaskExecutor; // Spring Boot's executor, carries the trace context along
+
+    @Value("${minio.presign.download-expiry-seconds:300}")
+    private long downloadExpirySeconds;
 
     /**
      * Endpoint to upload a PDF file.
-     * The file is uploaded to MinIO, and a message is sent to RabbitMQ for processing.
+     * The file is stored in MinIO under its content hash, and a message is sent to RabbitMQ for processing.
+     * If the same content was already extracted, the upload is linked to the existing result instead.
      *
-     * @param file The PDF file to upload.
-     * @return ResponseEntity indicating success or failure.
+     * @param file          The PDF file to upload.
+     * @param associationId Optional association (tenant) the report belongs to, extractions are scheduled fairly across associations.
+     * @param bulk          Whether the upload is part of a bulk import, which is rejected first when the workers fall behind.
+     * @return ResponseEntity indicating success or failure, 429 with Retry-After if the workers are too far behind.
      */
     @PostMapping("/upload")
-    public CompletableFuture<ResponseEntity<String>> uploadPdf(@RequestParam("file") MultipartFile file) {
+    public CompletableFuture<ResponseEntity<String>> uploadPdf(@RequestParam("file") MultipartFile file,
+                                                               @RequestParam(value = "associationId", required = false) String associationId,
+                                                               @RequestParam(value = "bulk", defaultValue = "false") boolean bulk) {
         return CompletableFuture.supplyAsync(() -> {
             if (file.isEmpty()) {
                 return new ResponseEntity<>("Please select a file to upload.", HttpStatus.BAD_REQUEST);
@@ -51,97 +83,223 @@ public class PdfController {
             if (!"application/pdf".equals(file.getContentType())) {
                 return new ResponseEntity<>("Only PDF files are allowed.", HttpStatus.BAD_REQUEST);
             }
+            if (associationId != null && associationId.length() > MAX_ASSOCIATION_ID_LENGTH) {
+                return new ResponseEntity<>("associationId must be at most " + MAX_ASSOCIATION_ID_LENGTH + " characters.", HttpStatus.BAD_REQUEST);
+            }
+            Optional<Duration> retryAfter = uploadAdmissionService.checkAdmission(bulk);
+            if (retryAfter.isPresent()) {
+                return tooManyRequests(retryAfter.get(), "Processing is backlogged, please retry later.");
+            }
 
             try {
-                String fileName = UUID.randomUUID().toString() + ".pdf";
-                // Upload PDF to MinIO
-                minioService.uploadFile(Constants.MINIO_BUCKET_NAME, fileName, file.getInputStream(), file.getContentType());
-                log.info("PDF uploaded to MinIO: {}/{}", Constants.MINIO_BUCKET_NAME, fileName);
-
-                // Send message to RabbitMQ for processing
-                PdfProcessRequest request = new PdfProcessRequest(fileName, file.getOriginalFilename(), Constants.MINIO_BUCKET_NAME);
-                messageProducer.sendMessage(request);
-                log.info("PDF processing request sent to RabbitMQ for file: {}", fileName);
-
-                return new ResponseEntity<>("PDF uploaded and queued for processing: " + file.getOriginalFilename(), HttpStatus.OK);
+                PdfUpload upload = pdfUploadService.upload(file, associationId == null || associationId.isBlank() ? null : associationId.trim());
+                if (upload.isDeduplicated()) {
+                    return new ResponseEntity<>("PDF already processed, linked to existing result: " + upload.getPdfFileName(), HttpStatus.OK);
+                }
+                return new ResponseEntity<>("PDF uploaded and queued for processing: " + file.getOriginalFilename()
+                        + " (" + upload.getPdfFileName() + ")", HttpStatus.OK);
             } catch (Exception e) {
                 log.error("Error uploading PDF or sending message to queue: {}", e.getMessage(), e);
                 return new ResponseEntity<>("Failed to upload PDF or queue for processing: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
             }
-        });
+        }, applicationTaskExecutor);
     }
 
     /**
-     * Endpoint to download a PDF file by its stored file name (UUID).
+     * Endpoint to start a direct upload of a PDF to MinIO, for files too large to pass through the service.
+     * The client computes the SHA-256 of the file, PUTs it to the returned URL with the returned headers,
+     * then calls the completion endpoint.
      *
-     * @param pdfFileName The unique file name (UUID) of the PDF to download.
-     * @return ResponseEntity containing the PDF file as a stream.
+     * @param sha256        The hex SHA-256 of the PDF.
+     * @param fileName      The original file name.
+     * @param associationId Optional association (tenant) the report belongs to.
+     * @param bulk          Whether the upload is part of a bulk import, which is rejected first when the workers fall behind.
+     * @return Where and how to upload the file, 400 if the hash is invalid, 429 with Retry-After if the workers are
+     * too far behind. Admission is decided here, the completion of a started upload is never rejected.
      */
-    @GetMapping("/download/{pdfFileName}")
-    public CompletableFuture<ResponseEntity<InputStreamResource>> downloadPdf(@PathVariable String pdfFileName) {
+    @PostMapping("/uploads")
+    public CompletableFuture<ResponseEntity<DirectUploadDto>> startDirectUpload(@RequestParam("sha256") String sha256,
+                                                                                @RequestParam("fileName") String fileName,
+                                                                                @RequestParam(value = "associationId", required = false) String associationId,
+                                                                                @RequestParam(value = "bulk", defaultValue = "false") boolean bulk) {
         return CompletableFuture.supplyAsync(() -> {
+            if (associationId != null && associationId.length() > MAX_ASSOCIATION_ID_LENGTH) {
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            Optional<Duration> retryAfter = uploadAdmissionService.checkAdmission(bulk);
+            if (retryAfter.isPresent()) {
+                return tooManyRequests(retryAfter.get(), null);
+            }
             try {
-                InputStream pdfStream = minioService.downloadFile(Constants.MINIO_BUCKET_NAME, pdfFileName);
-                InputStreamResource resource = new InputStreamResource(pdfStream);
+                DirectUploadDto upload = pdfUploadService.startDirectUpload(sha256, fileName,
+                        associationId == null || associationId.isBlank() ? null : associationId.trim());
+                return new ResponseEntity<>(upload, HttpStatus.OK);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid direct upload request for {}: {}", fileName, e.getMessage());
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            } catch (Exception e) {
+                log.error("Error starting direct upload of {}: {}", fileName, e.getMessage(), e);
+                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }, applicationTaskExecutor);
+    }
+
+    /**
+     * Completion callback of a direct upload: checks that the file is in MinIO and queues it for processing.
+     *
+     * @param uploadId The id returned when the upload was started.
+     * @return 200 once queued (or linked to an existing result), 404 for an unknown upload, 409 if the file was not uploaded.
+     */
+    @PostMapping("/uploads/{uploadId}/complete")
+    public CompletableFuture<ResponseEntity<String>> completeDirectUpload(@PathVariable UUID uploadId) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return pdfUploadService.completeDirectUpload(uploadId)
+                        .map(upload -> upload.isDeduplicated()
+                                ? new ResponseEntity<>("PDF already processed, linked to existing result: " + upload.getPdfFileName(), HttpStatus.OK)
+                                : new ResponseEntity<>("PDF queued for processing: " + upload.getPdfFileName(), HttpStatus.OK))
+                        .orElseGet(() -> new ResponseEntity<>("Unknown upload: " + uploadId, HttpStatus.NOT_FOUND));
+            } catch (IllegalStateException e) {
+                return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+            } catch (Exception e) {
+                log.error("Error completing direct upload {}: {}", uploadId, e.getMessage(), e);
+                return new ResponseEntity<>("Failed to complete upload: " + e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }, applicationTaskExecutor);
+    }
 
-                HttpHeaders headers = new HttpHeaders();
+    /**
+     * Endpoint to download a PDF file by its stored file name (content hash).
+     * Redirects to a presigned MinIO URL, so the file does not pass through the service.
+     *
+     * @param pdfFileName The unique file name (content hash) of the PDF to download.
+     * @return A redirect to the file, 404 if it is not stored.
+     */
+    @GetMapping("/download/{pdfFileName}")
+    public CompletableFuture<ResponseEntity<Void>> downloadPdf(@PathVariable String pdfFileName) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                if (!minioService.objectExists(Constants.MINIO_BUCKET_NAME, pdfFileName)) {
+                    return ResponseEntity.notFound().build();
+                }
                 // We try to fetch the original file name from the database to suggest it for download
                 String originalFileName = dataQueryService.getOriginalFileNameByPdfFileName(pdfFileName)
                         .orElse(pdfFileName); // Fallback to pdfFileName if not found
+                String contentDisposition = ContentDisposition.attachment()
+                        .filename(originalFileName, StandardCharsets.UTF_8)
+                        .build()
+                        .toString();
 
-                headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + originalFileName + "\"");
-                headers.add(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PDF_VALUE);
-
-                return ResponseEntity.ok()
-                        .headers(headers)
-                        .contentLength(pdfStream.available()) // This might not be accurate for all streams
-                        .contentType(MediaType.APPLICATION_PDF)
-                        .body(resource);
+                String url = minioService.presignedGetUrl(Constants.MINIO_BUCKET_NAME, pdfFileName,
+                        Map.of("response-content-disposition", contentDisposition,
+                                "response-content-type", MediaType.APPLICATION_PDF_VALUE),
+                        Duration.ofSeconds(downloadExpirySeconds));
+                return ResponseEntity.status(HttpStatus.FOUND).location(URI.create(url)).build();
             } catch (Exception e) {
                 log.error("Error downloading PDF {}: {}", pdfFileName, e.getMessage(), e);
-                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(null);
+                return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
             }
-        });
+        }, applicationTaskExecutor);
     }
 
     /**
      * Endpoint to get all extracted data.
+     * The ETag is a version stamp of the whole collection, dashboards polling with If-None-Match get 304 until
+     * an extraction is added, replaced, deleted or archived.
      *
-     * @return List of ExtractedDataDto.
+     * @param webRequest The request, for evaluating If-None-Match / If-Modified-Since.
+     * @return List of ExtractedDataDto, or 304 if unchanged.
      */
     @GetMapping("/data")
-    public CompletableFuture<ResponseEntity<List<ExtractedDataDto>>> getAllExtractedData() {
+    public CompletableFuture<ResponseEntity<List<ExtractedDataDto>>> getAllExtractedData(WebRequest webRequest) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                List<ExtractedDataDto> data = dataQueryService.getAllExtractedData();
-                return new ResponseEntity<>(data, HttpStatus.OK);
+                // The version is read before the data and from the same node, so the data is never older than its ETag
+                Optional<List<ExtractedDataDto>> data = dataQueryService.getAllExtractedDataIfModified(version -> {
+                    String eTag = "W/\"" + version.getCount() + "-" + epochMicros(version.getLastModified())
+                            + "-" + Long.toHexString(version.getChecksum()) + "\"";
+                    long lastModified = version.getLastModified() == null ? -1 : version.getLastModified().toEpochMilli();
+                    return webRequest.checkNotModified(eTag, lastModified);
+                });
+                if (data.isEmpty()) {
+                    return notModified();
+                }
+                return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(data.get());
             } catch (Exception e) {
                 log.error("Error retrieving extracted data: {}", e.getMessage(), e);
                 return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
             }
-        });
+        }, applicationTaskExecutor);
     }
 
     /**
      * Endpoint to get extracted data by PDF file name.
+     * The ETag identifies the extraction (id and extraction timestamp), a re-extraction changes it.
      *
      * @param pdfFileName The name of the PDF file.
-     * @return ExtractedDataDto if found, otherwise 404.
+     * @param webRequest  The request, for evaluating If-None-Match / If-Modified-Since.
+     * @return ExtractedDataDto if found, 304 if unchanged, otherwise 404.
      */
     @GetMapping("/data/{pdfFileName}")
-    public CompletableFuture<ResponseEntity<ExtractedDataDto>> getExtractedDataByPdfFileName(@PathVariable String pdfFileName) {
+    public CompletableFuture<ResponseEntity<ExtractedDataDto>> getExtractedDataByPdfFileName(@PathVariable String pdfFileName,
+                                                                                              WebRequest webRequest) {
         return CompletableFuture.supplyAsync(() -> {
             try {
-                ExtractedDataDto data = dataQueryService.getExtractedDataByPdfFileName(pdfFileName);
-                if (data != null) {
-                    return new ResponseEntity<>(data, HttpStatus.OK);
-                } else {
+                Optional<ExtractedData> data = dataQueryService.getExtractedDataByPdfFileName(pdfFileName);
+                if (data.isEmpty()) {
                     return new ResponseEntity<>(HttpStatus.NOT_FOUND);
                 }
+                // Derived from the row itself, so the ETag always matches the data sent with it
+                Instant extractionTimestamp = data.get().getExtractionTimestamp().atZone(ZoneId.systemDefault()).toInstant();
+                String eTag = "W/\"" + data.get().getId() + "-" + epochMicros(extractionTimestamp) + "\"";
+                if (webRequest.checkNotModified(eTag, extractionTimestamp.toEpochMilli())) {
+                    return notModified();
+                }
+                return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(dataQueryService.convertToDto(data.get()));
             } catch (Exception e) {
                 log.error("Error retrieving extracted data for {}: {}", pdfFileName, e.getMessage(), e);
                 return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
             }
-        });
+        }, applicationTaskExecutor);
+    }
+
+    /**
+     * Endpoint for ranked full-text search over title, keywords and summary of the extracted data.
+     *
+     * @param query  The search terms, e.g. "roof renovation loan".
+     * @param limit  The maximum number of results per page.
+     * @param cursor The `nextCursor` returned with the previous page, omitted for the first page.
+     * @return A page of results with highlighted excerpts, 400 if the cursor is invalid.
+     */
+    @GetMapping("/search")
+    public CompletableFuture<ResponseEntity<SearchPageDto>> search(@RequestParam("q") String query,
+                                                                    @RequestParam(value = "limit", defaultValue = "20") int limit,
+                                                                    @RequestParam(value = "cursor", required = false) String cursor) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return new ResponseEntity<>(dataQueryService.search(query, limit, cursor), HttpStatus.OK);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid search request '{}': {}", query, e.getMessage());
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            } catch (Exception e) {
+                log.error("Error searching extracted data for '{}': {}", query, e.getMessage(), e);
+                return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+            }
+        }, applicationTaskExecutor);
+    }
+
+    private static <T> ResponseEntity<T> tooManyRequests(Duration retryAfter, T body) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter.toSeconds()))
+                .body(body);
+    }
+
+    // checkNotModified has already set the status and the ETag / Last-Modified headers of the response
+    private static <T> ResponseEntity<T> notModified() {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).cacheControl(CacheControl.noCache()).build();
+    }
+
+    private static long epochMicros(Instant instant) {
+        return instant == null ? 0 : ChronoUnit.MICROS.between(Instant.EPOCH, instant);
     }
 }
@@ -0,0 +1,38 @@
+package com.odevo.hoa.service.repository;
+
+import com.odevo.hoa.common.entity.ExtractedDataLookup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * Repository for `ExtractedDataLookup` entity, the file name index of the partitioned extracted data.
+ * Rows are written by a database trigger only, never through this repository.
+ * Its narrow rows also answer "has anything changed" questions without reading the JSONB of `extracted_data`.
+ */
+@Repository
+public interface ExtractedDataLookupRepository extends JpaRepository<ExtractedDataLookup, String> {
+
+    /**
+     * Summarizes the extractions still in the database: any insert, re-extraction, deletion or archiving changes
+     * the result, so it serves as version stamp of the whole collection.
+     */
+    @Query(value = "SELECT count(*) AS \"count\", max(extraction_timestamp) AS \"lastModified\", "
+            + "coalesce(sum(hashtext(CAST(id AS text) || CAST(extraction_timestamp AS text))), 0) AS \"checksum\" "
+            + "FROM extracted_data_lookup WHERE archived_partition IS NULL",
+            nativeQuery = true)
+    CollectionVersion findCollectionVersion();
+
+    /**
+     * Projection of the collection version stamp, `lastModified` is null for an empty collection.
+     */
+    interface CollectionVersion {
+        Long getCount();
+
+        Instant getLastModified();
+
+        Long getChecksum();
+    }
+}
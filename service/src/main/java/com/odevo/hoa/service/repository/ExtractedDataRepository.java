@@ -2,18 +2,79 @@ package com.odevo.hoa.service.repository;
 
 import com.odevo.hoa.common.entity.ExtractedData; // Using the worker's entity
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 /**
  * Repository for `ExtractedData` entity.
  * This is used by the service to query the data stored by the worker.
- * Note: In a larger application, the service might query a read replica or a different data store.
- * For simplicity, both service and worker share the same entity and repository conceptually pointing to the same DB.
+ * Note: Read-only transactions are routed to a read replica when one is configured (see DataSourceConfig).
+ * Both service and worker share the same entity and repository conceptually pointing to the same DB.
  */
 @Repository
 public interface ExtractedDataRepository extends JpaRepository<ExtractedData, UUID> {
-    Optional<ExtractedData> findByPdfFileName(String pdfFileName);
+    /**
+     * Finds the extraction of a file. The partition key is read from the lookup table first,
+     * so only the partition holding the row is scanned (runtime partition pruning).
+     */
+    @Query(value = "SELECT e.* FROM extracted_data e "
+            + "WHERE e.pdf_file_name = :pdfFileName AND e.extraction_timestamp = "
+            + "(SELECT l.extraction_timestamp FROM extracted_data_lookup l WHERE l.pdf_file_name = :pdfFileName)",
+            nativeQuery = true)
+    Optional<ExtractedData> findByPdfFileName(@Param("pdfFileName") String pdfFileName);
+
+    // Ranking and paging only touch the GIN indexed search_vector, titles and headlines are computed for the page alone
+    String SEARCH_PAGE_SELECT = "SELECT e.id AS \"id\", e.pdf_file_name AS \"pdfFileName\", "
+            + "e.original_file_name AS \"originalFileName\", e.json_data ->> 'title' AS \"title\", p.rank AS \"rank\", "
+            + "ts_headline('english', coalesce(e.json_data ->> 'summary', ''), websearch_to_tsquery('english', :query), "
+            + "'MaxFragments=2, MaxWords=30, MinWords=10, StartSel=<mark>, StopSel=</mark>') AS \"headline\" "
+            + "FROM page p JOIN extracted_data e ON e.id = p.id "
+            + "ORDER BY p.rank DESC, p.id";
+
+    /**
+     * First page of a ranked full-text search over title, keywords and summary.
+     */
+    @Query(value = "WITH page AS ("
+            + "SELECT e.id, ts_rank_cd(e.search_vector, q.query) AS rank "
+            + "FROM extracted_data e, websearch_to_tsquery('english', :query) AS q(query) "
+            + "WHERE e.search_vector @@ q.query "
+            + "ORDER BY rank DESC, e.id LIMIT :limit) "
+            + SEARCH_PAGE_SELECT, nativeQuery = true)
+    List<SearchHit> search(@Param("query") String query, @Param("limit") int limit);
+
+    /**
+     * Following page of a ranked full-text search, continuing after the (rank, id) of the last hit of the previous page.
+     */
+    @Query(value = "WITH page AS ("
+            + "SELECT id, rank FROM ("
+            + "SELECT e.id, ts_rank_cd(e.search_vector, q.query) AS rank "
+            + "FROM extracted_data e, websearch_to_tsquery('english', :query) AS q(query) "
+            + "WHERE e.search_vector @@ q.query) ranked "
+            + "WHERE rank < CAST(:afterRank AS real) OR (rank = CAST(:afterRank AS real) AND id > :afterId) "
+            + "ORDER BY rank DESC, id LIMIT :limit) "
+            + SEARCH_PAGE_SELECT, nativeQuery = true)
+    List<SearchHit> searchAfter(@Param("query") String query, @Param("afterRank") float afterRank,
+                                @Param("afterId") UUID afterId, @Param("limit") int limit);
+
+    /**
+     * Projection of a single full-text search hit.
+     */
+    interface SearchHit {
+        UUID getId();
+
+        String getPdfFileName();
+
+        String getOriginalFileName();
+
+        String getTitle();
+
+        Float getRank();
+
+        String getHeadline();
+    }
 }
@@ -0,0 +1,45 @@
+package com.odevo.hoa.service.repository;
+
+import com.odevo.hoa.common.entity.LoanSummary;
+import com.odevo.hoa.common.entity.LoanSummaryId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Repository for `LoanSummary` entity.
+ * The service only reads these pre-aggregated rows, they are maintained by the worker.
+ */
+@Repository
+public interface LoanSummaryRepository extends JpaRepository<LoanSummary, LoanSummaryId> {
+
+    @Query("SELECT s FROM LoanSummary s "
+            + "WHERE (:association IS NULL OR s.association = :association) "
+            + "AND (:financialYear IS NULL OR s.financialYear = :financialYear) "
+            + "ORDER BY s.association, s.financialYear")
+    List<LoanSummary> findFiltered(@Param("association") String association, @Param("financialYear") Integer financialYear);
+
+    @Query("SELECT s.financialYear AS financialYear, SUM(s.loanCount) AS loanCount, SUM(s.totalDebt) AS totalDebt, "
+            + "SUM(s.ratedDebt) AS ratedDebt, SUM(s.rateWeightedDebt) AS rateWeightedDebt "
+            + "FROM LoanSummary s GROUP BY s.financialYear ORDER BY s.financialYear")
+    List<YearlyTotals> findYearlyTotals();
+
+    /**
+     * Projection of the loan aggregates of one year across all associations.
+     */
+    interface YearlyTotals {
+        Integer getFinancialYear();
+
+        Long getLoanCount();
+
+        BigDecimal getTotalDebt();
+
+        BigDecimal getRatedDebt();
+
+        BigDecimal getRateWeightedDebt();
+    }
+}
@@ -0,0 +1,14 @@
+package com.odevo.hoa.service.repository;
+
+import com.odevo.hoa.common.entity.PdfUpload;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.UUID;
+
+/**
+ * Repository for `PdfUpload` entity, recording every upload received by the service.
+ */
+@Repository
+public interface PdfUploadRepository extends JpaRepository<PdfUpload, UUID> {
+}
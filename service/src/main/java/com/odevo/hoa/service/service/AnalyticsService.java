@@ -0,0 +1,65 @@
+package com.odevo.hoa.service.service;
+
+import com.odevo.hoa.common.dto.LoanSummaryDto;
+import com.odevo.hoa.service.repository.LoanSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Service for loan analytics.
+ * Reads only the `loan_summary` aggregates maintained by the worker, never the extracted JSON documents.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnalyticsService {
+
+    private static final int RATE_SCALE = 4;
+
+    private final LoanSummaryRepository loanSummaryRepository;
+
+    /**
+     * Retrieves the loan aggregates per association and year.
+     *
+     * @param association   Only this association, or all if null.
+     * @param financialYear Only this year, or all if null.
+     * @return A list of LoanSummaryDto objects.
+     */
+    @Transactional(readOnly = true)
+    public List<LoanSummaryDto> getLoanSummaries(String association, Integer financialYear) {
+        log.info("Fetching loan summaries for association {} and year {}.", association, financialYear);
+        return loanSummaryRepository.findFiltered(association, financialYear).stream()
+                .map(summary -> new LoanSummaryDto(summary.getAssociation(), summary.getFinancialYear(),
+                        summary.getLoanCount(), summary.getTotalDebt(),
+                        weightedRate(summary.getRateWeightedDebt(), summary.getRatedDebt())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Retrieves the loan aggregates per year across all associations.
+     *
+     * @return A list of LoanSummaryDto objects without association.
+     */
+    @Transactional(readOnly = true)
+    public List<LoanSummaryDto> getYearlyLoanTotals() {
+        log.info("Fetching yearly loan totals.");
+        return loanSummaryRepository.findYearlyTotals().stream()
+                .map(totals -> new LoanSummaryDto(null, totals.getFinancialYear(), totals.getLoanCount(),
+                        totals.getTotalDebt(), weightedRate(totals.getRateWeightedDebt(), totals.getRatedDebt())))
+                .collect(Collectors.toList());
+    }
+
+    private BigDecimal weightedRate(BigDecimal rateWeightedDebt, BigDecimal ratedDebt) {
+        if (ratedDebt == null || ratedDebt.signum() == 0) {
+            return null;
+        }
+        return rateWeightedDebt.divide(ratedDebt, RATE_SCALE, RoundingMode.HALF_UP);
+    }
+}
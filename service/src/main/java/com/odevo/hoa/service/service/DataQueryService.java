@@ -3,14 +3,25 @@ package com.odevo.hoa.service.service;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.odevo.hoa.common.dto.ExtractedDataDto;
+import com.odevo.hoa.common.dto.SearchPageDto;
+import com.odevo.hoa.common.dto.SearchResultDto;
+import com.odevo.hoa.common.entity.ExtractedData;
+import com.odevo.hoa.service.repository.ExtractedDataLookupRepository;
+import com.odevo.hoa.service.repository.ExtractedDataLookupRepository.CollectionVersion;
 import com.odevo.hoa.service.repository.ExtractedDataRepository;
+import com.odevo.hoa.service.repository.ExtractedDataRepository.SearchHit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
@@ -23,44 +34,105 @@ import java.util.stream.Collectors;
 @Slf4j
 public class DataQueryService {
 
+    private static final int MAX_SEARCH_PAGE_SIZE = 100;
+
     private final ExtractedDataRepository extractedDataRepository;
+    private final ExtractedDataLookupRepository extractedDataLookupRepository;
     private final ObjectMapper objectMapper; // For converting JSONB to Map and vice-versa
 
     /**
-     * Retrieves all extracted data from the database and maps it to DTOs.
+     * Retrieves all extracted data from the database and maps it to DTOs, unless the caller's copy is current.
+     * The version stamp and the data are read in one read-only transaction, so with read replicas both come from
+     * the same node and the data is never older than the version.
      *
-     * @return A list of ExtractedDataDto objects.
+     * @param notModified Decides from the version stamp (number, latest extraction timestamp and checksum of the
+     *                    extractions) whether the caller's copy is current, before any data is loaded.
+     * @return A list of ExtractedDataDto objects, or empty if the caller's copy is current.
      */
-    public List<ExtractedDataDto> getAllExtractedData() {
+    @Transactional(readOnly = true)
+    public Optional<List<ExtractedDataDto>> getAllExtractedDataIfModified(Predicate<CollectionVersion> notModified) {
+        if (notModified.test(extractedDataLookupRepository.findCollectionVersion())) {
+            return Optional.empty();
+        }
         log.info("Fetching all extracted data from the database.");
-        return extractedDataRepository.findAll().stream()
+        return Optional.of(extractedDataRepository.findAll().stream()
                 .map(this::convertToDto)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     /**
-     * Retrieves extracted data by PDF file name from the database.
+     * Retrieves the extraction of a PDF from the database. Its id and extraction timestamp identify the version
+     * of the row, convert it with {@link #convertToDto} once it is needed.
      *
      * @param pdfFileName The file name of the PDF.
-     * @return The ExtractedDataDto if found, otherwise null.
+     * @return The extraction, or empty if there is none in the database.
      */
-    public ExtractedDataDto getExtractedDataByPdfFileName(String pdfFileName) {
+    @Transactional(readOnly = true)
+    public Optional<ExtractedData> getExtractedDataByPdfFileName(String pdfFileName) {
         log.info("Fetching extracted data for PDF file name: {}", pdfFileName);
-        return extractedDataRepository.findByPdfFileName(pdfFileName)
-                .map(this::convertToDto)
-                .orElse(null);
+        return extractedDataRepository.findByPdfFileName(pdfFileName);
     }
 
     /**
-     * Retrieves the original file name for a given PDF file name (UUID).
+     * Retrieves the original file name for a given PDF file name (content hash).
      *
-     * @param pdfFileName The unique file name (UUID) of the PDF.
+     * @param pdfFileName The unique file name (content hash) of the PDF.
      * @return An Optional containing the original file name if found, otherwise empty.
      */
+    @Transactional(readOnly = true)
     public Optional<String> getOriginalFileNameByPdfFileName(String pdfFileName) {
         log.info("Fetching original file name for PDF file name: {}", pdfFileName);
         return extractedDataRepository.findByPdfFileName(pdfFileName)
-                .map(com.odevo.hoa.common.entity.ExtractedData::getOriginalFileName);
+                .map(ExtractedData::getOriginalFileName);
+    }
+
+    /**
+     * Ranked full-text search over title, keywords and summary of all extracted documents.
+     * Pages are fetched with keyset pagination on (rank, id), so deep pages cost the same as the first one.
+     *
+     * @param query  The search terms (web search syntax, e.g. `roof renovation -garage`).
+     * @param limit  The page size, capped at 100.
+     * @param cursor The `nextCursor` of the previous page, or null for the first page.
+     * @return The page of results and the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor is malformed.
+     */
+    @Transactional(readOnly = true)
+    public SearchPageDto search(String query, int limit, String cursor) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_SEARCH_PAGE_SIZE));
+        log.info("Searching extracted data for '{}' (limit {}, cursor {}).", query, pageSize, cursor);
+
+        List<SearchHit> hits;
+        if (cursor == null || cursor.isBlank()) {
+            hits = extractedDataRepository.search(query, pageSize);
+        } else {
+            String[] position = decodeCursor(cursor);
+            hits = extractedDataRepository.searchAfter(query, Float.parseFloat(position[0]), UUID.fromString(position[1]), pageSize);
+        }
+
+        List<SearchResultDto> results = hits.stream()
+                .map(hit -> new SearchResultDto(hit.getId().toString(), hit.getPdfFileName(), hit.getOriginalFileName(),
+                        hit.getTitle(), hit.getRank(), hit.getHeadline()))
+                .collect(Collectors.toList());
+        String nextCursor = null;
+        if (hits.size() == pageSize) {
+            SearchHit last = hits.get(hits.size() - 1);
+            nextCursor = encodeCursor(last.getRank(), last.getId());
+        }
+        return new SearchPageDto(results, nextCursor);
+    }
+
+    private String encodeCursor(float rank, UUID id) {
+        String position = Float.toString(rank) + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String[] parts = position.split("\\|");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid search cursor: " + cursor);
+        }
+        return parts;
     }
 
     /**
@@ -69,7 +141,7 @@ public class DataQueryService {
      * Since we are using JPA and a `jsonb` type, Spring Data JPA might automatically handle the mapping if the entity field is `Map<String, Object>`.
      * If not, manual conversion from String (or byte[]) to Map might be needed.
      */
-    private ExtractedDataDto convertToDto(com.odevo.hoa.common.entity.ExtractedData entity) {
+    public ExtractedDataDto convertToDto(ExtractedData entity) {
         Map<String, Object> jsonDataMap = null;
         try {
             // Assuming jsonData is stored as a JSON string in the entity for simplicity with JPA.
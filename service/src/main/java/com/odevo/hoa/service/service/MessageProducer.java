@@ -7,6 +7,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * Service for sending messages to RabbitMQ.
  * This producer will send PdfProcessRequest objects to the worker queue.
@@ -18,6 +20,9 @@ public class MessageProducer {
 
     private final RabbitTemplate rabbitTemplate;
 
+    // Requests published by this instance, for the drain rate estimate of the UploadAdmissionService
+    private final AtomicLong publishedCount = new AtomicLong();
+
     /**
      * Sends a PDF processing request message to the RabbitMQ queue.
      * The message is sent to a topic exchange with a specific routing key.
@@ -27,5 +32,10 @@ public class MessageProducer {
     public void sendMessage(PdfProcessRequest request) {
         log.info("Sending message to RabbitMQ: {}", request);
         rabbitTemplate.convertAndSend(Constants.RABBITMQ_EXCHANGE_NAME, Constants.RABBITMQ_ROUTING_KEY, request);
+        publishedCount.incrementAndGet();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
     }
 }
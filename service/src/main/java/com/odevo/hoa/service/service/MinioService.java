@@ -2,26 +2,51 @@ package com.odevo.hoa.service.service;
 
 import io.minio.BucketExistsArgs;
 import io.minio.GetObjectArgs;
+import io.minio.GetPresignedObjectUrlArgs;
 import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 import io.minio.PutObjectArgs;
+import io.minio.StatObjectArgs;
+import io.minio.errors.ErrorResponseException;
 import io.minio.errors.MinioException;
-import lombok.RequiredArgsConstructor;
+import io.minio.http.Method;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import java.io.InputStream;
+import java.time.Duration;
+import java.util.Map;
 
 /**
  * Service for interacting with MinIO (local S3 equivalent).
- * Handles uploading and downloading files to/from the configured bucket.
+ * Handles uploading and downloading files to/from the configured bucket, and presigning URLs
+ * for clients transferring files directly to/from MinIO.
  */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class MinioService {
 
     private final MinioClient minioClient;
+    private final MinioClient presignMinioClient;
+
+    public MinioService(MinioClient minioClient, @Qualifier("presignMinioClient") MinioClient presignMinioClient) {
+        this.minioClient = minioClient;
+        this.presignMinioClient = presignMinioClient;
+    }
+
+    /**
+     * Creates a bucket if it does not exist yet.
+     *
+     * @param bucketName The name of the bucket.
+     * @throws Exception if an error occurs while checking or creating the bucket.
+     */
+    public void ensureBucket(String bucketName) throws Exception {
+        if (!minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build())) {
+            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+            log.info("MinIO bucket '{}' created.", bucketName);
+        }
+    }
 
     /**
      * Uploads a file to a specified MinIO bucket.
@@ -30,31 +55,46 @@ public class MinioService {
      * @param bucketName   The name of the bucket.
      * @param objectName   The name of the object (file) in the bucket.
      * @param inputStream  The input stream of the file to upload.
+     * @param size         The size of the file in bytes.
      * @param contentType  The content type of the file (e.g., "application/pdf").
      * @throws Exception if an error occurs during upload.
      */
-    public void uploadFile(String bucketName, String objectName, InputStream inputStream, String contentType) throws Exception {
-        // Check if the bucket exists; if not, create it
-        boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
-        if (!found) {
-            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
-            log.info("MinIO bucket '{}' created.", bucketName);
-        } else {
-            log.info("MinIO bucket '{}' already exists.", bucketName);
-        }
+    public void uploadFile(String bucketName, String objectName, InputStream inputStream, long size, String contentType) throws Exception {
+        ensureBucket(bucketName);
 
         // Upload the object
         minioClient.putObject(
                 PutObjectArgs.builder()
                         .bucket(bucketName)
                         .object(objectName)
-                        .stream(inputStream, inputStream.available(), -1)
+                        .stream(inputStream, size, -1)
                         .contentType(contentType)
                         .build()
         );
         log.info("File '{}' uploaded successfully to bucket '{}'.", objectName, bucketName);
     }
 
+    /**
+     * Checks whether an object exists, without transferring its content.
+     *
+     * @param bucketName The name of the bucket.
+     * @param objectName The name of the object (file).
+     * @return true if the object exists.
+     * @throws Exception if an error other than a missing object/bucket occurs.
+     */
+    public boolean objectExists(String bucketName, String objectName) throws Exception {
+        try {
+            minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(objectName).build());
+            return true;
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchBucket".equals(code) || "NoSuchObject".equals(code)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
     /**
      * Downloads a file from a specified MinIO bucket.
      *
@@ -81,4 +121,51 @@ public class MinioService {
             throw new RuntimeException("File download failed: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Presigns a PUT of an object, letting a client upload it directly to MinIO.
+     * The headers are part of the signature: the client must send them unchanged, so MinIO rejects the upload
+     * if e.g. the content does not match an `x-amz-checksum-sha256` header.
+     * Presigning is a local computation, no request is made to MinIO.
+     *
+     * @param bucketName The name of the bucket.
+     * @param objectName The name of the object (file) to upload.
+     * @param headers    The headers the client must send with the upload.
+     * @param expiry     How long the URL is valid.
+     * @return The presigned URL.
+     * @throws Exception if the URL cannot be signed.
+     */
+    public String presignedPutUrl(String bucketName, String objectName, Map<String, String> headers, Duration expiry) throws Exception {
+        return presignMinioClient.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(Method.PUT)
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .extraHeaders(headers)
+                        .expiry((int) expiry.toSeconds())
+                        .build()
+        );
+    }
+
+    /**
+     * Presigns a GET of an object, letting a client download it directly from MinIO.
+     *
+     * @param bucketName      The name of the bucket.
+     * @param objectName      The name of the object (file) to download.
+     * @param responseHeaders Headers MinIO overrides in the response, e.g. `response-content-disposition`.
+     * @param expiry          How long the URL is valid.
+     * @return The presigned URL.
+     * @throws Exception if the URL cannot be signed.
+     */
+    public String presignedGetUrl(String bucketName, String objectName, Map<String, String> responseHeaders, Duration expiry) throws Exception {
+        return presignMinioClient.getPresignedObjectUrl(
+                GetPresignedObjectUrlArgs.builder()
+                        .method(Method.GET)
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .extraQueryParams(responseHeaders)
+                        .expiry((int) expiry.toSeconds())
+                        .build()
+        );
+    }
 }
@@ -0,0 +1,202 @@
+package com.odevo.hoa.service.service;
+
+import com.odevo.hoa.common.dto.DirectUploadDto;
+import com.odevo.hoa.common.dto.PdfProcessRequest;
+import com.odevo.hoa.common.entity.PdfUpload;
+import com.odevo.hoa.common.util.Constants;
+import com.odevo.hoa.service.repository.ExtractedDataLookupRepository;
+import com.odevo.hoa.service.repository.PdfUploadRepository;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Service handling PDF uploads with content-addressed storage.
+ * Every PDF is stored in MinIO under the SHA-256 of its content. Uploading a document that was
+ * already extracted only records the upload: no MinIO write and no processing request are needed.
+ * Large files can bypass the service: the client announces the SHA-256 of the file, PUTs it directly to MinIO
+ * with a presigned URL and confirms the upload, which queues it for processing.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PdfUploadService {
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final Pattern SHA_256_HEX = Pattern.compile("[0-9a-fA-F]{64}");
+
+    private final MinioService minioService;
+    private final MessageProducer messageProducer;
+    private final ExtractedDataLookupRepository extractedDataLookupRepository;
+    private final PdfUploadRepository pdfUploadRepository;
+    private final ObservationRegistry observationRegistry;
+
+    @Value("${minio.presign.upload-expiry-seconds:900}")
+    private long uploadExpirySeconds;
+
+    /**
+     * Stores (if needed) and queues (if needed) an uploaded PDF.
+     *
+     * @param file          The uploaded PDF file.
+     * @param associationId The association (tenant) the upload belongs to, may be null.
+     * @return The recorded upload, `deduplicated` is set if an existing extraction was reused.
+     * @throws Exception if an error occurs during upload or queueing.
+     */
+    public PdfUpload upload(MultipartFile file, String associationId) throws Exception {
+        String pdfFileName = Observation.createNotStarted("hoa.pdf.hash", observationRegistry)
+                .highCardinalityKeyValue("pdf.size.bytes", String.valueOf(file.getSize()))
+                .observeChecked(() -> contentHash(file)) + ".pdf";
+
+        // Archived extractions count as well, their partition can be restored from the archive bucket
+        boolean alreadyExtracted = extractedDataLookupRepository.existsById(pdfFileName);
+        if (alreadyExtracted) {
+            log.info("PDF {} already extracted as {}, skipping storage and processing.", file.getOriginalFilename(), pdfFileName);
+        } else {
+            if (minioService.objectExists(Constants.MINIO_BUCKET_NAME, pdfFileName)) {
+                log.info("PDF {} already stored in MinIO, skipping upload.", pdfFileName);
+            } else {
+                Observation.createNotStarted("hoa.minio.upload", observationRegistry)
+                        .highCardinalityKeyValue("pdf.file.name", pdfFileName)
+                        .highCardinalityKeyValue("pdf.size.bytes", String.valueOf(file.getSize()))
+                        .observeChecked(() -> {
+                            try (InputStream inputStream = file.getInputStream()) {
+                                minioService.uploadFile(Constants.MINIO_BUCKET_NAME, pdfFileName, inputStream, file.getSize(), file.getContentType());
+                            }
+                        });
+                log.info("PDF uploaded to MinIO: {}/{}", Constants.MINIO_BUCKET_NAME, pdfFileName);
+            }
+
+            queueForProcessing(pdfFileName, file.getOriginalFilename(), associationId);
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        PdfUpload upload = PdfUpload.builder()
+                .pdfFileName(pdfFileName)
+                .originalFileName(file.getOriginalFilename())
+                .associationId(associationId)
+                .deduplicated(alreadyExtracted)
+                .uploadTimestamp(now)
+                .completedTimestamp(now)
+                .build();
+        return pdfUploadRepository.save(upload);
+    }
+
+    /**
+     * Starts a direct upload: records the upload and presigns a PUT of the file to MinIO under its content hash.
+     * The checksum header is signed, so MinIO only accepts content matching the announced hash.
+     *
+     * @param sha256           The hex SHA-256 of the PDF, computed by the client.
+     * @param originalFileName The original file name.
+     * @param associationId    The association (tenant) the upload belongs to, may be null.
+     * @return Where and how to upload the file, without URL if no upload is needed.
+     * @throws IllegalArgumentException if the hash is not a hex SHA-256.
+     * @throws Exception if an error occurs while accessing MinIO.
+     */
+    public DirectUploadDto startDirectUpload(String sha256, String originalFileName, String associationId) throws Exception {
+        if (!SHA_256_HEX.matcher(sha256).matches()) {
+            throw new IllegalArgumentException("sha256 must be 64 hex characters");
+        }
+        String pdfFileName = sha256.toLowerCase() + ".pdf";
+        LocalDateTime now = LocalDateTime.now();
+        PdfUpload upload = PdfUpload.builder()
+                .pdfFileName(pdfFileName)
+                .originalFileName(originalFileName)
+                .associationId(associationId)
+                .uploadTimestamp(now)
+                .build();
+
+        if (extractedDataLookupRepository.existsById(pdfFileName)) {
+            log.info("PDF {} already extracted as {}, no upload needed.", originalFileName, pdfFileName);
+            upload.setDeduplicated(true);
+            upload.setCompletedTimestamp(now);
+            upload = pdfUploadRepository.save(upload);
+            return new DirectUploadDto(upload.getId(), pdfFileName, true, null, null, null);
+        }
+        upload = pdfUploadRepository.save(upload);
+        if (minioService.objectExists(Constants.MINIO_BUCKET_NAME, pdfFileName)) {
+            log.info("PDF {} already stored in MinIO, only the completion is needed.", pdfFileName);
+            return new DirectUploadDto(upload.getId(), pdfFileName, false, null, null, null);
+        }
+
+        minioService.ensureBucket(Constants.MINIO_BUCKET_NAME);
+        Map<String, String> headers = Map.of(
+                "Content-Type", "application/pdf",
+                "x-amz-checksum-sha256", Base64.getEncoder().encodeToString(HexFormat.of().parseHex(sha256)));
+        Duration expiry = Duration.ofSeconds(uploadExpirySeconds);
+        String uploadUrl = minioService.presignedPutUrl(Constants.MINIO_BUCKET_NAME, pdfFileName, headers, expiry);
+        log.info("Direct upload {} of {} started as {}.", upload.getId(), originalFileName, pdfFileName);
+        return new DirectUploadDto(upload.getId(), pdfFileName, false, uploadUrl, headers, Instant.now().plus(expiry));
+    }
+
+    /**
+     * Confirms a direct upload and queues the PDF for processing. Confirming an upload again has no effect.
+     *
+     * @param uploadId The id returned by {@link #startDirectUpload(String, String, String)}.
+     * @return The completed upload, or empty if no such upload exists.
+     * @throws IllegalStateException if the file is not in MinIO (yet).
+     * @throws Exception if an error occurs while accessing MinIO or queueing.
+     */
+    public Optional<PdfUpload> completeDirectUpload(UUID uploadId) throws Exception {
+        Optional<PdfUpload> found = pdfUploadRepository.findById(uploadId);
+        if (found.isEmpty() || found.get().getCompletedTimestamp() != null) {
+            return found;
+        }
+        PdfUpload upload = found.get();
+        String pdfFileName = upload.getPdfFileName();
+        // The document may have been extracted from another upload in the meantime
+        if (extractedDataLookupRepository.existsById(pdfFileName)) {
+            upload.setDeduplicated(true);
+        } else {
+            if (!minioService.objectExists(Constants.MINIO_BUCKET_NAME, pdfFileName)) {
+                throw new IllegalStateException("PDF " + pdfFileName + " has not been uploaded");
+            }
+            queueForProcessing(pdfFileName, upload.getOriginalFileName(), upload.getAssociationId());
+        }
+        upload.setCompletedTimestamp(LocalDateTime.now());
+        return Optional.of(pdfUploadRepository.save(upload));
+    }
+
+    private void queueForProcessing(String pdfFileName, String originalFileName, String associationId) {
+        PdfProcessRequest request = new PdfProcessRequest(pdfFileName, originalFileName, Constants.MINIO_BUCKET_NAME, associationId);
+        messageProducer.sendMessage(request);
+        log.info("PDF processing request sent to RabbitMQ for file: {}", pdfFileName);
+    }
+
+    /**
+     * Computes the SHA-256 of the upload by streaming it through the digest, without buffering it in memory.
+     */
+    private String contentHash(MultipartFile file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            byte[] buffer = new byte[HASH_BUFFER_SIZE];
+            while (inputStream.read(buffer) != -1) {
+                // Reading is enough, the DigestInputStream updates the digest
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,181 @@
+package com.odevo.hoa.service.service;
+
+import com.odevo.hoa.common.util.Constants;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Admission control of uploads based on the backlog of the workers.
+ * The depth of the processing queue is polled with a passive declare every `admission.poll-interval-ms`. The rate
+ * at which the workers drain it is estimated from the change in depth and the requests published in between, and
+ * the processing delay of a new upload from both. Above the thresholds of its class an upload is rejected with the
+ * time after which it is likely to be admitted. Bulk uploads have lower thresholds, so they are shed first.
+ * Re-extractions never reach the service, the BackfillScheduler of the worker already pauses while live requests wait.
+ * Note: with several service instances, the requests published by the others are not seen, which underestimates the
+ * drain rate and so errs on the side of rejecting.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UploadAdmissionService {
+
+    // Weight of the latest drain rate sample in the moving average
+    private static final double RATE_SMOOTHING = 0.3;
+    // Requests drained before a sample is taken, a shorter backlog says little about the capacity of the workers
+    private static final long MIN_SAMPLE_DRAINED = 10;
+
+    private final AmqpAdmin amqpAdmin;
+    private final MessageProducer messageProducer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.interactive.max-delay-seconds:1800}")
+    private long interactiveMaxDelaySeconds;
+
+    @Value("${admission.interactive.max-depth:2000}")
+    private long interactiveMaxDepth;
+
+    @Value("${admission.bulk.max-delay-seconds:300}")
+    private long bulkMaxDelaySeconds;
+
+    @Value("${admission.bulk.max-depth:200}")
+    private long bulkMaxDepth;
+
+    @Value("${admission.retry-after.default-seconds:60}")
+    private long defaultRetryAfterSeconds;
+
+    @Value("${admission.retry-after.max-seconds:3600}")
+    private long maxRetryAfterSeconds;
+
+    private Counter interactiveRejected;
+    private Counter bulkRejected;
+
+    // Written by the poller only, read by request threads
+    private volatile long depth;
+    private volatile double drainRate = Double.NaN; // requests per second, NaN until the queue was seen draining
+    private volatile boolean backlogKnown;
+
+    private long lastPollNanos;
+    private long lastPublishedCount;
+    // Drained requests and elapsed time of the backlog since the last sample
+    private long windowDrained;
+    private double windowSeconds;
+
+    @PostConstruct
+    void init() {
+        Gauge.builder("hoa.service.admission.queue.depth", this, service -> service.depth)
+                .description("Processing requests waiting in the queue")
+                .register(meterRegistry);
+        Gauge.builder("hoa.service.admission.drain.rate", this, service -> service.drainRate)
+                .description("Estimated processing rate of the workers (requests per second)")
+                .register(meterRegistry);
+        Gauge.builder("hoa.service.admission.delay.seconds", this, UploadAdmissionService::estimatedDelaySeconds)
+                .description("Estimated processing delay of a new upload")
+                .register(meterRegistry);
+        interactiveRejected = Counter.builder("hoa.service.admission.rejected").tag("class", "interactive")
+                .description("Uploads rejected by admission control")
+                .register(meterRegistry);
+        bulkRejected = Counter.builder("hoa.service.admission.rejected").tag("class", "bulk")
+                .description("Uploads rejected by admission control")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Decides whether an upload may be queued for processing now.
+     *
+     * @param bulk Whether the upload is part of a bulk import (shed first) rather than interactive.
+     * @return Empty if the upload is admitted, otherwise how long the client should wait before retrying.
+     */
+    public Optional<Duration> checkAdmission(boolean bulk) {
+        if (!enabled || !backlogKnown) {
+            return Optional.empty(); // fail open, publishing itself fails if the broker is down
+        }
+        long maxDepth = bulk ? bulkMaxDepth : interactiveMaxDepth;
+        long maxDelaySeconds = bulk ? bulkMaxDelaySeconds : interactiveMaxDelaySeconds;
+        long currentDepth = depth;
+        double rate = drainRate;
+        // The backlog the workers clear within the delay threshold, capped by the depth threshold
+        long admittedDepth = Double.isNaN(rate) ? maxDepth : Math.min(maxDepth, (long) (rate * maxDelaySeconds));
+        if (currentDepth < admittedDepth) {
+            return Optional.empty();
+        }
+
+        long retryAfterSeconds = Double.isNaN(rate) || rate <= 0
+                ? defaultRetryAfterSeconds
+                : (long) Math.ceil((currentDepth - admittedDepth + 1) / rate);
+        retryAfterSeconds = Math.max(1, Math.min(retryAfterSeconds, maxRetryAfterSeconds));
+        (bulk ? bulkRejected : interactiveRejected).increment();
+        log.info("Rejecting {} upload, {} requests waiting at {} per second, retry after {} s.",
+                bulk ? "bulk" : "interactive", currentDepth, Double.isNaN(rate) ? "unknown rate" : String.format("%.2f", rate), retryAfterSeconds);
+        return Optional.of(Duration.ofSeconds(retryAfterSeconds));
+    }
+
+    /**
+     * Polls the depth of the processing queue and updates the drain rate estimate.
+     */
+    @Scheduled(fixedDelayString = "${admission.poll-interval-ms:2000}")
+    public void pollBacklog() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            long publishedCount = messageProducer.getPublishedCount();
+            QueueInformation info = amqpAdmin.getQueueInfo(Constants.RABBITMQ_QUEUE_NAME);
+            long nowNanos = System.nanoTime();
+            if (info == null) {
+                throw new IllegalStateException("Queue " + Constants.RABBITMQ_QUEUE_NAME + " does not exist");
+            }
+            long currentDepth = info.getMessageCount();
+
+            // Only an interval the queue held a backlog throughout shows the capacity of the workers, otherwise they
+            // may have been idle part of it and the sample is the arrival rate
+            if (backlogKnown && depth > 0 && currentDepth > 0 && info.getConsumerCount() > 0) {
+                windowSeconds += (nowNanos - lastPollNanos) / 1e9;
+                windowDrained += Math.max(0, depth + (publishedCount - lastPublishedCount) - currentDepth);
+                if (windowDrained >= MIN_SAMPLE_DRAINED) {
+                    double sample = windowDrained / windowSeconds;
+                    drainRate = Double.isNaN(drainRate) ? sample : RATE_SMOOTHING * sample + (1 - RATE_SMOOTHING) * drainRate;
+                    windowDrained = 0;
+                    windowSeconds = 0;
+                }
+            } else {
+                windowDrained = 0;
+                windowSeconds = 0;
+            }
+            depth = currentDepth;
+            lastPollNanos = nowNanos;
+            lastPublishedCount = publishedCount;
+            backlogKnown = true;
+        } catch (Exception e) {
+            if (backlogKnown) {
+                log.warn("Cannot read the depth of the processing queue, admitting all uploads: {}", e.getMessage());
+            }
+            backlogKnown = false;
+        }
+    }
+
+    /**
+     * @return The estimated seconds until a request queued now gets processed, NaN if the drain rate is unknown.
+     */
+    private double estimatedDelaySeconds() {
+        double rate = drainRate;
+        if (Double.isNaN(rate)) {
+            return Double.NaN;
+        }
+        return rate > 0 ? depth / rate : Double.POSITIVE_INFINITY;
+    }
+}
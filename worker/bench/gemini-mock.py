@@ -0,0 +1,94 @@
+#!/usr/bin/env python3
+"""Minimal stand-in for the Gemini streamGenerateContent endpoint, used by transport-benchmark.sh.
+
+Accepts gzip compressed request bodies, reads the bodies of all connections together at most at --uplink-mbps
+(the shared uplink to the real API is the bottleneck, not loopback), waits --latency-ms and streams a fixed
+extraction as server-sent events. GET /stats returns the connections and requests seen so far and the bytes received on the wire.
+"""
+import argparse
+import gzip
+import http.server
+import json
+import threading
+import time
+
+EXTRACTION = json.dumps({
+    "title": "Årsredovisning Brf Benchmark", "association": "Brf Benchmark", "auditor": None,
+    "summary": "Benchmark extraction.", "keywords": ["benchmark"], "board_members": [{"name": "A", "role": "Chair"}],
+    "financial_year": "2023", "loans": [{"debt": "1 000 000 kr", "interrest_rate": "3,5 %"}],
+})
+
+stats = {"connections": 0, "requests": 0, "bytes_received": 0, "bytes_decoded": 0}
+lock = threading.Lock()
+uplink_free_at = 0.0  # when the uplink has sent everything reserved so far (guarded by lock)
+
+
+class Handler(http.server.BaseHTTPRequestHandler):
+    protocol_version = "HTTP/1.1"  # keep-alive, so connection reuse by the client shows in the stats
+
+    def setup(self):
+        super().setup()
+        with lock:
+            stats["connections"] += 1
+
+    def do_GET(self):
+        body = json.dumps(stats).encode()
+        self.send_response(200)
+        self.send_header("Content-Type", "application/json")
+        self.send_header("Content-Length", str(len(body)))
+        self.end_headers()
+        self.wfile.write(body)
+
+    def do_POST(self):
+        body = self.read_throttled(int(self.headers["Content-Length"]))
+        if self.headers.get("Content-Encoding") == "gzip":
+            decoded = gzip.decompress(body)
+        else:
+            decoded = body
+        json.loads(decoded)  # the request must be valid JSON either way
+        with lock:
+            stats["requests"] += 1
+            stats["bytes_received"] += len(body)
+            stats["bytes_decoded"] += len(decoded)
+
+        time.sleep(args.latency_ms / 1000)
+        self.send_response(200)
+        self.send_header("Content-Type", "text/event-stream")
+        self.send_header("Transfer-Encoding", "chunked")
+        self.end_headers()
+        for i in range(0, len(EXTRACTION), 64):
+            event = "data: " + json.dumps({"candidates": [{"content": {"parts": [{"text": EXTRACTION[i:i + 64]}], "role": "model"}}]}) + "\r\n\r\n"
+            chunk = event.encode()
+            self.wfile.write(b"%x\r\n%s\r\n" % (len(chunk), chunk))
+        self.wfile.write(b"0\r\n\r\n")
+        self.wfile.flush()
+
+    def read_throttled(self, length):
+        global uplink_free_at
+        if args.uplink_mbps <= 0:
+            return self.rfile.read(length)
+        chunks = []
+        while length > 0:
+            chunk = self.rfile.read(min(64 * 1024, length))
+            chunks.append(chunk)
+            length -= len(chunk)
+            # Every block reserves its transmission time on the shared uplink, after the blocks reserved before
+            with lock:
+                uplink_free_at = max(time.monotonic(), uplink_free_at) + len(chunk) * 8 / (args.uplink_mbps * 1_000_000)
+                done_at = uplink_free_at
+            time.sleep(max(0.0, done_at - time.monotonic()))
+        return b"".join(chunks)
+
+    def log_message(self, format, *arguments):
+        pass
+
+
+parser = argparse.ArgumentParser()
+parser.add_argument("--port", type=int, default=8099)
+parser.add_argument("--latency-ms", type=int, default=1500, help="time to generate the answer")
+parser.add_argument("--uplink-mbps", type=float, default=40, help="request bandwidth of all connections, 0 = unlimited")
+args = parser.parse_args()
+
+server = http.server.ThreadingHTTPServer(("127.0.0.1", args.port), Handler)
+server.daemon_threads = True
+server.serve_forever()
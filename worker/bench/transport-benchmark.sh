@@ -0,0 +1,91 @@
+#!/usr/bin/env bash
+# Measures the effect of the HTTP transport settings (gemini.http.*, gemini.api.compress-requests, minio.http.*)
+# on extraction throughput. The same number of fresh PDFs is imported twice with the bulk ingest
+# (BulkIngestApplication), against gemini-mock.py instead of the real API: once with the library defaults
+# (OkHttp's 5 requests per host, uncompressed Gemini requests over HTTP/1.1) and once with the tuned defaults
+# of application.yaml plus request compression, which is off by default until verified against the real API.
+# The mock limits the request bandwidth of all connections together (UPLINK_MBPS), like the uplink to the real
+# API would.
+#
+# Usage, from the repository root:
+#   mvn -B install -DskipTests
+#   worker/bench/transport-benchmark.sh [pdfs] [pdf-size-kb]
+# Set SKIP_COMPOSE=1 to use an already running PostgreSQL and MinIO (MINIO_URL, DATASOURCE_URL, ...).
+set -euo pipefail
+
+PDFS=${1:-100}
+SIZE_KB=${2:-2048}
+UPLINK_MBPS=${UPLINK_MBPS:-40}
+MINIO_URL=${MINIO_URL:-http://localhost:9000}
+MINIO_CREDENTIALS=${MINIO_CREDENTIALS:-minioadmin:minioadmin}
+DATASOURCE_URL=${DATASOURCE_URL:-jdbc:postgresql://localhost:5432/hoadb}
+DATASOURCE_USERNAME=${DATASOURCE_USERNAME:-user}
+DATASOURCE_PASSWORD=${DATASOURCE_PASSWORD:-password}
+MOCK_PORT=8099
+BUCKET=transport-benchmark
+JAR=worker/target/worker-0.0.1-SNAPSHOT.jar
+RUN_ID=$(date +%s)
+
+if [ -z "${SKIP_COMPOSE:-}" ]; then
+    docker compose up -d postgresql minio
+    docker compose run --rm hoa-migrate
+fi
+
+python3 worker/bench/gemini-mock.py --port "$MOCK_PORT" --uplink-mbps "$UPLINK_MBPS" &
+MOCK_PID=$!
+WORK_DIR=$(mktemp -d)
+trap 'kill $MOCK_PID; rm -rf "$WORK_DIR"' EXIT
+sleep 1
+
+s3() {
+    curl -sf --aws-sigv4 "aws:amz:us-east-1:s3" --user "$MINIO_CREDENTIALS" -H "x-amz-content-sha256: UNSIGNED-PAYLOAD" "$@"
+}
+
+s3 -X PUT "$MINIO_URL/$BUCKET" > /dev/null || true # already exists after the first run
+
+# Random content, so every run extracts new PDFs and nothing is skipped as already extracted.
+# Like the compressed streams of real PDFs, it does not compress well, only the base64 overhead can be saved.
+upload_pdfs() {
+    local prefix=$1
+    for i in $(seq "$PDFS"); do
+        { printf '%%PDF-1.7\n'; head -c $((SIZE_KB * 1024)) /dev/urandom; } > "$WORK_DIR/report.pdf"
+        s3 -T "$WORK_DIR/report.pdf" "$MINIO_URL/$BUCKET/$prefix/report-$i.pdf" > /dev/null
+    done
+}
+
+mock_stats() {
+    curl -sf "http://localhost:$MOCK_PORT/stats"
+}
+
+run_ingest() {
+    local name=$1
+    shift
+    upload_pdfs "$RUN_ID-$name"
+    local before
+    before=$(mock_stats)
+    echo "== $name"
+    java -Dloader.main=com.odevo.hoa.worker.ingest.BulkIngestApplication -cp "$JAR" \
+        org.springframework.boot.loader.launch.PropertiesLauncher \
+        --spring.datasource.url="$DATASOURCE_URL" --spring.datasource.username="$DATASOURCE_USERNAME" \
+        --spring.datasource.password="$DATASOURCE_PASSWORD" --minio.url="$MINIO_URL" \
+        --minio.accessKey="${MINIO_CREDENTIALS%%:*}" --minio.secretKey="${MINIO_CREDENTIALS#*:}" \
+        --gemini.api.base-url="http://localhost:$MOCK_PORT/v1beta" --gemini.api.key=benchmark \
+        --ingest.bucket="$BUCKET" --ingest.prefix="$RUN_ID-$name/" \
+        --ingest.download-concurrency=8 --ingest.extract-concurrency=16 \
+        --management.tracing.sampling.probability=0 --logging.level.com.odevo.hoa=WARN \
+        --logging.level.org.hibernate.SQL=WARN --logging.level.org.hibernate.type.descriptor.sql.BasicBinder=WARN \
+        --logging.level.com.odevo.hoa.worker.ingest=INFO "$@" 2>&1 \
+        | grep -oE '(Bulk ingest of .* finished in|Throughput:|Stage ).*'
+    python3 -c '
+import json, sys
+before, after = json.loads(sys.argv[1]), json.loads(sys.argv[2])
+delta = {key: after[key] - before[key] for key in after}
+print("Gemini mock: %d requests over %d connections, %.1f MB sent for %.1f MB of JSON"
+      % (delta["requests"], delta["connections"], delta["bytes_received"] / 1e6, delta["bytes_decoded"] / 1e6))
+' "$before" "$(mock_stats)"
+}
+
+run_ingest library-defaults \
+    --minio.http.max-requests=5 --minio.http.max-idle-connections=5 --minio.http.keep-alive-ms=300000 \
+    --gemini.api.compress-requests=false --gemini.http.protocols=HTTP11 --gemini.http.max-connections=16
+run_ingest tuned --gemini.api.compress-requests=true
@@ -1,8 +1,19 @@
 package com.odevo.hoa.worker.config;
 
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.WriteTimeoutHandler;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * General database and other configurations for the worker.
@@ -13,9 +24,43 @@ public class DatabaseConfig {
     /**
      * Configures a WebClient bean for making HTTP requests,
      * specifically for interacting with the Gemini API.
+     * Built from Spring Boot's builder, which records every request as a span of the current trace.
+     * Connections come from a dedicated pool of at most `gemini.http.max-connections`, idle connections are evicted
+     * in the background before the server drops them, and HTTP/2 is negotiated (ALPN) where the server supports it,
+     * so concurrent extractions share a few multiplexed connections. The pool is exposed as the
+     * `reactor.netty.connection.provider.*` metrics (name `gemini`).
+     * The response timeout is the longest pause allowed between two reads, so a long streamed answer is not cut off.
      */
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder().build();
+    public WebClient webClient(WebClient.Builder webClientBuilder,
+                               @Value("${gemini.http.max-connections:64}") int maxConnections,
+                               @Value("${gemini.http.pending-acquire-timeout-ms:60000}") long pendingAcquireTimeoutMillis,
+                               @Value("${gemini.http.max-idle-time-ms:30000}") long maxIdleTimeMillis,
+                               @Value("${gemini.http.max-life-time-ms:600000}") long maxLifeTimeMillis,
+                               @Value("${gemini.http.connect-timeout-ms:5000}") int connectTimeoutMillis,
+                               @Value("${gemini.http.write-timeout-ms:30000}") long writeTimeoutMillis,
+                               @Value("${gemini.http.response-timeout-ms:60000}") long responseTimeoutMillis,
+                               @Value("${gemini.http.protocols:H2,HTTP11}") List<HttpProtocol> protocols) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("gemini")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(pendingAcquireTimeoutMillis))
+                .maxIdleTime(Duration.ofMillis(maxIdleTimeMillis))
+                .maxLifeTime(Duration.ofMillis(maxLifeTimeMillis))
+                .evictInBackground(Duration.ofMillis(maxIdleTimeMillis / 2))
+                .metrics(true)
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .protocol(protocols.toArray(HttpProtocol[]::new))
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(responseTimeoutMillis))
+                .doOnConnected(connection -> connection.addHandlerLast(new WriteTimeoutHandler(writeTimeoutMillis, TimeUnit.MILLISECONDS)))
+                .compress(true); // accept gzip responses
+        if (protocols.contains(HttpProtocol.H2)) {
+            httpClient = httpClient.secure(); // ALPN for https URLs, plain http URLs stay on HTTP/1.1
+        }
+        return webClientBuilder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
     }
 }
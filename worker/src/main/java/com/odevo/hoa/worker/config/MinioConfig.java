@@ -1,6 +1,9 @@
 package com.odevo.hoa.worker.config;
 
+import com.odevo.hoa.common.util.MinioHttpClientFactory;
+import io.micrometer.core.instrument.MeterRegistry;
 import io.minio.MinioClient;
+import okhttp3.OkHttpClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -8,6 +11,8 @@ import org.springframework.context.annotation.Configuration;
 /**
  * Configuration for MinIO client in the worker.
  * This client will be used to download files from the MinIO server.
+ * Its OkHttp client is built by MinioHttpClientFactory, sized by `minio.http.*` for the worker's parallelism
+ * (listeners and bulk ingest).
  */
 @Configuration
 public class MinioConfig {
@@ -22,10 +27,27 @@ public class MinioConfig {
     private String minioSecretKey;
 
     @Bean
-    public MinioClient minioClient() {
+    public MinioClient minioClient(OkHttpClient minioHttpClient) {
         return MinioClient.builder()
                 .endpoint(minioUrl)
                 .credentials(minioAccessKey, minioSecretKey)
+                .httpClient(minioHttpClient)
                 .build();
     }
+
+    /**
+     * OkHttp client of the MinIO client, see MinioHttpClientFactory.
+     */
+    @Bean
+    public OkHttpClient minioHttpClient(MeterRegistry meterRegistry,
+                                        @Value("${minio.http.max-requests:64}") int maxRequests,
+                                        @Value("${minio.http.max-idle-connections:16}") int maxIdleConnections,
+                                        @Value("${minio.http.keep-alive-ms:60000}") long keepAliveMillis,
+                                        @Value("${minio.http.connect-timeout-ms:5000}") long connectTimeoutMillis,
+                                        @Value("${minio.http.read-timeout-ms:60000}") long readTimeoutMillis,
+                                        @Value("${minio.http.write-timeout-ms:60000}") long writeTimeoutMillis,
+                                        @Value("${minio.http.http2:false}") boolean http2) {
+        return MinioHttpClientFactory.create(meterRegistry, maxRequests, maxIdleConnections, keepAliveMillis,
+                connectTimeoutMillis, readTimeoutMillis, writeTimeoutMillis, http2);
+    }
 }
@@ -3,16 +3,19 @@ package com.odevo.hoa.worker.config;
 import com.odevo.hoa.common.util.Constants;
 import org.springframework.amqp.core.Binding;
 import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
 import org.springframework.amqp.core.TopicExchange;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 /**
  * Configuration for RabbitMQ in the worker.
- * Defines the exchange, queue, and binding to consume messages.
+ * Defines the exchange, queues, and bindings to consume messages.
  */
 @Configuration
 public class RabbitMQConfig {
@@ -34,6 +37,50 @@ public class RabbitMQConfig {
                 .with(Constants.RABBITMQ_ROUTING_KEY);
     }
 
+    @Bean
+    public Queue backfillQueue() {
+        return new Queue(Constants.RABBITMQ_BACKFILL_QUEUE_NAME, true); // durable, low-priority re-extraction lane
+    }
+
+    @Bean
+    public Binding backfillBinding(Queue backfillQueue, TopicExchange exchange) {
+        return BindingBuilder.bind(backfillQueue)
+                .to(exchange)
+                .with(Constants.RABBITMQ_BACKFILL_ROUTING_KEY);
+    }
+
+    @Bean
+    public DirectExchange retryExchange() {
+        return new DirectExchange(Constants.RABBITMQ_RETRY_EXCHANGE_NAME);
+    }
+
+    /**
+     * Deferred requests wait here for `lease.retry-delay-ms`, then expire back to the processing exchange,
+     * keeping their routing key, i.e. the queue they came from.
+     * Note: RabbitMQ refuses to redeclare a queue with other arguments, delete the queue when changing the delay.
+     */
+    @Bean
+    public Queue retryQueue(@Value("${lease.retry-delay-ms:30000}") long retryDelayMillis) {
+        return QueueBuilder.durable(Constants.RABBITMQ_RETRY_QUEUE_NAME)
+                .ttl((int) retryDelayMillis)
+                .deadLetterExchange(Constants.RABBITMQ_EXCHANGE_NAME)
+                .build();
+    }
+
+    @Bean
+    public Binding retryBinding(Queue retryQueue, DirectExchange retryExchange) {
+        return BindingBuilder.bind(retryQueue)
+                .to(retryExchange)
+                .with(Constants.RABBITMQ_ROUTING_KEY);
+    }
+
+    @Bean
+    public Binding retryBackfillBinding(Queue retryQueue, DirectExchange retryExchange) {
+        return BindingBuilder.bind(retryQueue)
+                .to(retryExchange)
+                .with(Constants.RABBITMQ_BACKFILL_ROUTING_KEY);
+    }
+
     @Bean
     public MessageConverter jsonMessageConverter() {
         // Use Jackson2JsonMessageConverter for automatic JSON serialization/deserialization
@@ -2,38 +2,137 @@ package com.odevo.hoa.worker.consumer;
 
 import com.odevo.hoa.common.dto.PdfProcessRequest;
 import com.odevo.hoa.common.util.Constants;
+import com.odevo.hoa.worker.limiter.FairShareScheduler;
+import com.odevo.hoa.worker.repository.BackfillFailureRepository;
 import com.odevo.hoa.worker.service.PdfProcessingService;
+import com.odevo.hoa.worker.service.ProcessingOutcome;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Component;
 
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * RabbitMQ message consumer for PDF processing requests.
  * Listens to the defined queue and triggers PDF processing.
+ * Each delivery continues the trace whose context the publisher put in the message headers
+ * (`spring.rabbitmq.listener.simple.observation-enabled`).
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
 public class MessageConsumer {
 
+    // Listener id of the live processing queue, its consumers are resized by the ConcurrencyTuner
+    public static final String PROCESSING_LISTENER_ID = "pdfProcessingListener";
+    // Tenant of uploads without an association
+    static final String DEFAULT_TENANT = "default";
+    // Association ids come from the client, the prefix keeps them apart from the internal tenants
+    static final String ASSOCIATION_TENANT_PREFIX = "association:";
+    // All re-extractions share one tenant, so a backfill gets one fair share at most
+    static final String BACKFILL_TENANT = "backfill";
+
     private final PdfProcessingService pdfProcessingService;
+    private final BackfillFailureRepository backfillFailureRepository;
+    private final FairShareScheduler fairShareScheduler;
+    private final RabbitTemplate rabbitTemplate;
+    private final ObservationRegistry observationRegistry;
+    private final AtomicBoolean firstMessage = new AtomicBoolean(true);
 
     /**
      * Listens for messages on the PDF processing queue.
-     * When a message (PdfProcessRequest) is received, it triggers the PDF processing.
+     * When a message (PdfProcessRequest) is received, it triggers the PDF processing once its association gets a slot.
      *
      * @param request The PdfProcessRequest received from the queue.
      */
-    @RabbitListener(queues = Constants.RABBITMQ_QUEUE_NAME)
+    @RabbitListener(id = PROCESSING_LISTENER_ID, queues = Constants.RABBITMQ_QUEUE_NAME)
     public void receivePdfProcessRequest(PdfProcessRequest request) {
         log.info("Received PDF processing request from RabbitMQ: {}", request);
+        logFirstMessage();
+        String tenant = request.getAssociationId() == null ? DEFAULT_TENANT : ASSOCIATION_TENANT_PREFIX + request.getAssociationId();
+        acquireSlot(tenant, "live");
         try {
-            pdfProcessingService.processPdf(request);
-            log.info("Successfully processed PDF: {}", request.getPdfFileName());
+            ProcessingOutcome outcome = pdfProcessingService.processPdf(request);
+            deferIfNeeded(outcome, request, Constants.RABBITMQ_ROUTING_KEY);
+            log.info("Handled PDF {}: {}", request.getPdfFileName(), outcome);
         } catch (Exception e) {
             log.error("Error processing PDF request for file {}: {}", request.getPdfFileName(), e.getMessage(), e);
             // In a real application, you might want to send to a dead-letter queue or retry.
+        } finally {
+            fairShareScheduler.release(tenant);
+        }
+    }
+
+    /**
+     * Listens for re-extraction requests on the low-priority backfill queue.
+     * Runs with its own (small) number of consumers so that a backfill never takes over the worker.
+     *
+     * @param request The PdfProcessRequest re-enqueued by the BackfillScheduler.
+     */
+    @RabbitListener(queues = Constants.RABBITMQ_BACKFILL_QUEUE_NAME, concurrency = "${backfill.consumers:1}")
+    public void receiveBackfillRequest(PdfProcessRequest request) {
+        log.info("Received PDF re-extraction request from RabbitMQ: {}", request);
+        acquireSlot(BACKFILL_TENANT, "backfill");
+        try {
+            ProcessingOutcome outcome = pdfProcessingService.processPdf(request);
+            deferIfNeeded(outcome, request, Constants.RABBITMQ_BACKFILL_ROUTING_KEY);
+            log.info("Handled PDF re-extraction {}: {}", request.getPdfFileName(), outcome);
+        } catch (Exception e) {
+            log.error("Error re-extracting PDF {}: {}", request.getPdfFileName(), e.getMessage(), e);
+            recordBackfillFailure(request);
+        } finally {
+            fairShareScheduler.release(BACKFILL_TENANT);
+        }
+    }
+
+    /**
+     * Counts the failed re-extraction, so the BackfillScheduler stops enqueuing the PDF after `backfill.max-attempts`.
+     */
+    private void recordBackfillFailure(PdfProcessRequest request) {
+        try {
+            backfillFailureRepository.recordFailure(request.getPdfFileName(), Constants.EXTRACTION_VERSION);
+        } catch (RuntimeException e) {
+            log.warn("Could not record the failed re-extraction of PDF {}: {}", request.getPdfFileName(), e.getMessage());
+        }
+    }
+
+    /**
+     * Parks a request whose PDF is being processed by another attempt in the retry queue. After `lease.retry-delay-ms`
+     * it is dead-lettered back to its queue: by then the other attempt either completed (and the request is a duplicate)
+     * or its lease expired.
+     */
+    private void deferIfNeeded(ProcessingOutcome outcome, PdfProcessRequest request, String routingKey) {
+        if (outcome == ProcessingOutcome.DEFERRED) {
+            rabbitTemplate.convertAndSend(Constants.RABBITMQ_RETRY_EXCHANGE_NAME, routingKey, request);
+        }
+    }
+
+    /**
+     * Logs the time from JVM start to the first live message once, read by worker/bench/startup-benchmark.sh.
+     */
+    private void logFirstMessage() {
+        if (firstMessage.compareAndSet(true, false)) {
+            log.info("First message received {} ms after JVM start.", ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+    }
+
+    /**
+     * Waits for the tenant's turn for an extraction slot. If interrupted (e.g. on shutdown), the message is rejected and requeued.
+     */
+    private void acquireSlot(String tenant, String lane) {
+        try {
+            Observation.createNotStarted("hoa.fair.wait", observationRegistry)
+                    .lowCardinalityKeyValue("lane", lane)
+                    .highCardinalityKeyValue("tenant", tenant)
+                    .observeChecked(() -> fairShareScheduler.acquire(tenant));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an extraction slot", e);
         }
     }
 }
@@ -0,0 +1,20 @@
+package com.odevo.hoa.worker.ingest;
+
+import com.odevo.hoa.worker.HoaWorkerApplication;
+import org.springframework.boot.SpringApplication;
+
+/**
+ * One-shot application importing the PDFs under a MinIO bucket/prefix directly, without going through the
+ * service and RabbitMQ (see BulkIngestRunner). Runs the worker with the `ingest` profile, which leaves the
+ * listeners and the backfill off, and exits once the import is done.
+ * Usage: `--ingest.bucket=<bucket> [--ingest.prefix=<prefix>] [--ingest.restart=true]`, e.g. with
+ * `docker compose run --rm hoa-ingest --ingest.bucket=archive --ingest.prefix=2015/`.
+ * Deliberately not a @Configuration, so the worker's component scan does not pick it up.
+ */
+public class BulkIngestApplication {
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(HoaWorkerApplication.class);
+        application.setAdditionalProfiles("ingest");
+        System.exit(SpringApplication.exit(application.run(args)));
+    }
+}
@@ -0,0 +1,402 @@
+package com.odevo.hoa.worker.ingest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.odevo.hoa.common.entity.JobCheckpoint;
+import com.odevo.hoa.common.util.Constants;
+import com.odevo.hoa.worker.repository.ExtractedDataRepository;
+import com.odevo.hoa.worker.repository.JobCheckpointRepository;
+import com.odevo.hoa.worker.service.ExtractionPersistenceService;
+import com.odevo.hoa.worker.service.GeminiService;
+import com.odevo.hoa.worker.service.MinioService;
+import com.odevo.hoa.worker.service.PdfContent;
+import com.odevo.hoa.worker.service.PdfContentService;
+import com.odevo.hoa.worker.service.PendingExtraction;
+import com.odevo.hoa.worker.service.ProcessingLeaseService;
+import io.minio.Result;
+import io.minio.messages.Item;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Offline import of the PDFs under a MinIO bucket/prefix, run by the BulkIngestApplication (profile `ingest`).
+ * The objects are listed in name order and pass three stages, each with its own threads and a bounded queue
+ * (`ingest.queue-capacity`) in front of it, so a slow stage blocks the one feeding it instead of PDFs piling up in memory:
+ * 1. download (`ingest.download-concurrency`): reads the PDF and names it by its SHA-256, as the upload endpoint does.
+ * Every PDF reserves its memory first (see PdfContentService) and keeps it until it is extracted, so how many PDFs are
+ * downloaded and extracted at once also follows their size.
+ * 2. extract (`ingest.extract-concurrency`): takes the processing lease, skips PDFs already extracted with the
+ * current version, copies the PDF into the upload bucket and calls Gemini.
+ * 3. persist (`ingest.persist-concurrency`): stores up to `ingest.batch-size` extractions per transaction.
+ * The name of the object up to which everything is done is checkpointed in job_checkpoint, so a new run resumes
+ * after it and only picks up objects added since (`ingest.restart=true` starts over). A failed PDF is never done, the
+ * checkpoint stays before it and the next run retries it (the PDFs after it that succeeded are skipped as already
+ * extracted then). A throughput report is logged at the end, the exit code is 1 if any PDF failed.
+ */
+@Component
+@Profile("ingest")
+@RequiredArgsConstructor
+@Slf4j
+public class BulkIngestRunner implements ApplicationRunner, ExitCodeGenerator {
+
+    private static final String JOB_NAME_PREFIX = "bulk-ingest:";
+    private static final long CHECKPOINT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final MinioService minioService;
+    private final PdfContentService pdfContentService;
+    private final GeminiService geminiService;
+    private final ExtractionPersistenceService extractionPersistenceService;
+    private final ProcessingLeaseService processingLeaseService;
+    private final ExtractedDataRepository extractedDataRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+
+    @Value("${ingest.bucket}")
+    private String bucket;
+
+    @Value("${ingest.prefix:}")
+    private String prefix;
+
+    @Value("${ingest.download-concurrency:4}")
+    private int downloadConcurrency;
+
+    @Value("${ingest.extract-concurrency:8}")
+    private int extractConcurrency;
+
+    @Value("${ingest.persist-concurrency:1}")
+    private int persistConcurrency;
+
+    @Value("${ingest.batch-size:20}")
+    private int batchSize;
+
+    @Value("${ingest.queue-capacity:8}")
+    private int queueCapacity;
+
+    @Value("${ingest.restart:false}")
+    private boolean restart;
+
+    private final LongAdder listed = new LongAdder();
+    private final LongAdder extracted = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder leftToOthers = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bytesDownloaded = new LongAdder();
+
+    // Listed PDFs not done yet, failed ones included, by listing sequence (guarded by this)
+    private final TreeMap<Long, IngestItem> inFlight = new TreeMap<>();
+    private String lastListed;
+    private long lastCheckpointNanos;
+
+    private final Object checkpointLock = new Object();
+    private JobCheckpoint checkpoint;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        String jobName = JOB_NAME_PREFIX + bucket + "/" + prefix;
+        checkpoint = jobCheckpointRepository.findById(jobName)
+                .filter(existing -> !restart)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(jobName).build());
+        String startAfter = checkpoint.getPosition();
+        log.info("Bulk ingest of {}/{} starting {}.", bucket, prefix, startAfter == null ? "from the beginning" : "after " + startAfter);
+
+        long startNanos = System.nanoTime();
+        // Created downstream first, every stage hands its items to the next one
+        Stage persistStage = new Stage("persist", persistConcurrency, batchSize, this::persist);
+        Stage extractStage = new Stage("extract", extractConcurrency, 1, batch -> extract(batch.get(0), persistStage));
+        Stage downloadStage = new Stage("download", downloadConcurrency, 1, batch -> download(batch.get(0), extractStage));
+        try {
+            list(startAfter, downloadStage);
+        } finally {
+            downloadStage.closeAndAwait();
+            extractStage.closeAndAwait();
+            persistStage.closeAndAwait();
+            saveCheckpoint();
+            report(System.nanoTime() - startNanos, List.of(downloadStage, extractStage, persistStage));
+        }
+    }
+
+    @Override
+    public int getExitCode() {
+        return failed.sum() > 0 ? 1 : 0;
+    }
+
+    /**
+     * Lists the PDFs after the checkpoint and feeds them to the download stage, blocking while it is full.
+     */
+    private void list(String startAfter, Stage downloadStage) throws Exception {
+        long sequence = 0;
+        for (Result<Item> result : minioService.listObjects(bucket, prefix, startAfter)) {
+            Item object = result.get();
+            String objectName = object.objectName();
+            if (object.isDir() || !objectName.toLowerCase().endsWith(".pdf")) {
+                listedOther(objectName);
+                continue;
+            }
+            IngestItem item = new IngestItem(sequence++, objectName, object.size());
+            track(item);
+            listed.increment();
+            downloadStage.submit(item);
+        }
+    }
+
+    private void download(IngestItem item, Stage extractStage) throws Exception {
+        item.content = pdfContentService.load(bucket, item.objectName, item.size);
+        bytesDownloaded.add(item.content.size());
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(item.content.buffer());
+        item.pdfFileName = HexFormat.of().formatHex(digest.digest()) + ".pdf";
+        extractStage.submit(item);
+    }
+
+    /**
+     * Extracts a PDF under its processing lease, like PdfProcessingService does for a message. The lease is handed
+     * over to the persist stage together with the result.
+     */
+    private void extract(IngestItem item, Stage persistStage) throws Exception {
+        Optional<UUID> leaseToken = processingLeaseService.tryAcquire(item.pdfFileName);
+        if (leaseToken.isEmpty()) {
+            log.info("PDF {} ({}) is being processed by another attempt, leaving it.", item.pdfFileName, item.objectName);
+            leftToOthers.increment();
+            completed(item);
+            return;
+        }
+
+        boolean handedOver = false;
+        try {
+            if (extractedDataRepository.findExtractionVersion(item.pdfFileName).filter(Constants.EXTRACTION_VERSION::equals).isPresent()) {
+                log.debug("PDF {} ({}) is already extracted with version {}, skipping.", item.pdfFileName, item.objectName, Constants.EXTRACTION_VERSION);
+                skipped.increment();
+                completed(item);
+                return;
+            }
+            if (!minioService.objectExists(Constants.MINIO_BUCKET_NAME, item.pdfFileName)) {
+                minioService.copyFile(bucket, item.objectName, Constants.MINIO_BUCKET_NAME, item.pdfFileName);
+            }
+            item.jsonData = geminiService.extractDataFromPdfContent(item.content);
+            releaseContent(item); // only the result waits for the persist stage
+            item.leaseToken = leaseToken.get();
+            persistStage.submit(item);
+            handedOver = true;
+        } finally {
+            if (!handedOver) {
+                processingLeaseService.release(item.pdfFileName, leaseToken.get());
+            }
+        }
+    }
+
+    private void persist(List<IngestItem> batch) {
+        List<PendingExtraction> extractions = batch.stream()
+                .map(item -> new PendingExtraction(item.pdfFileName, item.originalFileName(), item.jsonData, "", item.leaseToken))
+                .toList();
+        try {
+            Set<String> stored = extractionPersistenceService.persistAll(extractions);
+            for (IngestItem item : batch) {
+                if (stored.contains(item.pdfFileName)) {
+                    extracted.increment();
+                } else {
+                    leftToOthers.increment(); // the lease was taken over, the other attempt stores its own result
+                }
+                completed(item);
+            }
+        } finally {
+            batch.forEach(item -> processingLeaseService.release(item.pdfFileName, item.leaseToken));
+        }
+    }
+
+    private void failed(IngestItem item, String stage, Exception e) {
+        log.error("Bulk ingest of {} failed in the {} stage: {}", item.objectName, stage, e.getMessage(), e);
+        failed.increment();
+        // Stays in flight, so the checkpoint does not move past it
+        releaseContent(item);
+    }
+
+    private void releaseContent(IngestItem item) {
+        if (item.content != null) {
+            item.content.close();
+            item.content = null;
+        }
+    }
+
+    private synchronized void track(IngestItem item) {
+        item.previousObjectName = lastListed;
+        inFlight.put(item.sequence, item);
+        lastListed = item.objectName;
+    }
+
+    private synchronized void listedOther(String objectName) {
+        lastListed = objectName;
+    }
+
+    private void completed(IngestItem item) {
+        releaseContent(item);
+        synchronized (this) {
+            inFlight.remove(item.sequence);
+            long now = System.nanoTime();
+            if (now - lastCheckpointNanos < CHECKPOINT_INTERVAL_NANOS) {
+                return;
+            }
+            lastCheckpointNanos = now;
+        }
+        saveCheckpoint();
+    }
+
+    /**
+     * @return The name of the last listed object up to which every object is done, null if none is.
+     */
+    private synchronized String donePosition() {
+        return inFlight.isEmpty() ? lastListed : inFlight.firstEntry().getValue().previousObjectName;
+    }
+
+    private void saveCheckpoint() {
+        // Positions only move forward, computing and saving them under one lock keeps the saves in order
+        synchronized (checkpointLock) {
+            String position = donePosition();
+            if (position == null || position.equals(checkpoint.getPosition())) {
+                return;
+            }
+            try {
+                checkpoint.setPosition(position);
+                checkpoint.setUpdatedAt(LocalDateTime.now());
+                checkpoint = jobCheckpointRepository.save(checkpoint);
+            } catch (Exception e) {
+                log.warn("Could not save the bulk ingest checkpoint {}: {}", position, e.getMessage());
+            }
+        }
+    }
+
+    private void report(long elapsedNanos, List<Stage> stages) {
+        double seconds = elapsedNanos / 1e9;
+        long done = extracted.sum() + skipped.sum() + leftToOthers.sum() + failed.sum();
+        log.info("Bulk ingest of {}/{} finished in {} s: {} PDFs listed, {} extracted, {} already extracted, {} left to other attempts, {} failed.",
+                bucket, prefix, String.format("%.1f", seconds), listed.sum(), extracted.sum(), skipped.sum(), leftToOthers.sum(), failed.sum());
+        log.info("Throughput: {} PDFs/s extracted, {} PDFs/s handled, {} MB/s downloaded ({} MB).",
+                String.format("%.2f", extracted.sum() / seconds), String.format("%.2f", done / seconds),
+                String.format("%.2f", bytesDownloaded.sum() / 1e6 / seconds), String.format("%.1f", bytesDownloaded.sum() / 1e6));
+        for (Stage stage : stages) {
+            long calls = stage.calls.sum();
+            log.info("Stage {}: {} threads, {} PDFs in {} calls, {} ms per call, {}% busy.",
+                    stage.name, stage.concurrency, stage.handled.sum(), calls,
+                    calls == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(stage.busyNanos.sum() / calls),
+                    Math.round(100.0 * stage.busyNanos.sum() / (stage.concurrency * (double) elapsedNanos)));
+        }
+    }
+
+    @FunctionalInterface
+    private interface BatchHandler {
+        void handle(List<IngestItem> batch) throws Exception;
+    }
+
+    /**
+     * A pipeline stage: a fixed number of threads taking batches of up to `batchSize` items from a bounded queue.
+     * An item whose handler fails is counted as failed, the others carry on.
+     */
+    private final class Stage {
+        private final String name;
+        private final int concurrency;
+        private final BlockingQueue<IngestItem> input = new ArrayBlockingQueue<>(queueCapacity);
+        private final ExecutorService threads;
+        private final LongAdder busyNanos = new LongAdder();
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder calls = new LongAdder();
+        private volatile boolean inputClosed;
+
+        Stage(String name, int concurrency, int batchSize, BatchHandler handler) {
+            this.name = name;
+            this.concurrency = concurrency;
+            this.threads = Executors.newFixedThreadPool(concurrency, new CustomizableThreadFactory("ingest-" + name + "-"));
+            for (int i = 0; i < concurrency; i++) {
+                threads.execute(() -> work(batchSize, handler));
+            }
+            threads.shutdown();
+        }
+
+        /**
+         * Hands an item to the stage, blocking while its queue is full.
+         */
+        void submit(IngestItem item) throws InterruptedException {
+            input.put(item);
+        }
+
+        /**
+         * Lets the threads finish once the queue is empty and waits for them. No items may be submitted afterwards.
+         */
+        void closeAndAwait() throws InterruptedException {
+            inputClosed = true;
+            threads.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+
+        private void work(int batchSize, BatchHandler handler) {
+            List<IngestItem> batch = new ArrayList<>(batchSize);
+            try {
+                while (true) {
+                    IngestItem first = input.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        if (inputClosed && input.isEmpty()) {
+                            return;
+                        }
+                        continue;
+                    }
+                    // Batches take what is waiting, they never wait to fill up
+                    batch.add(first);
+                    input.drainTo(batch, batchSize - 1);
+                    long startNanos = System.nanoTime();
+                    try {
+                        handler.handle(batch);
+                    } catch (InterruptedException e) {
+                        throw e;
+                    } catch (Exception e) {
+                        batch.forEach(item -> failed(item, name, e));
+                    }
+                    busyNanos.add(System.nanoTime() - startNanos);
+                    handled.add(batch.size());
+                    calls.increment();
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class IngestItem {
+        private final long sequence;
+        private final String objectName;
+        private final long size;
+        private String previousObjectName; // the object listed before, everything up to it is done once this item is
+        private PdfContent content;
+        private String pdfFileName;
+        private JsonNode jsonData;
+        private UUID leaseToken;
+
+        IngestItem(long sequence, String objectName, long size) {
+            this.sequence = sequence;
+            this.objectName = objectName;
+            this.size = size;
+        }
+
+        String originalFileName() {
+            return objectName.substring(objectName.lastIndexOf('/') + 1);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.odevo.hoa.worker.limiter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adaptive limit on the number of concurrent extractions, using AIMD (additive increase, multiplicative decrease).
+ * Every Gemini call reports its latency and outcome: a fast, successful call grows the limit by one while the
+ * current limit is actually in use, a failed or slow call (above `limiter.latency-threshold-ms`) shrinks it by
+ * `limiter.backoff-ratio`. The current limit and the in-flight count are exposed as metrics.
+ * Slots are handed out to tenants by the FairShareScheduler.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${limiter.initial:4}")
+    private int initialLimit;
+
+    @Value("${limiter.min:1}")
+    private int minLimit;
+
+    @Value("${limiter.max:32}")
+    private int maxLimit;
+
+    @Value("${limiter.latency-threshold-ms:20000}")
+    private long latencyThresholdMs;
+
+    @Value("${limiter.backoff-ratio:0.75}")
+    private double backoffRatio;
+
+    private final List<Runnable> limitIncreaseCallbacks = new CopyOnWriteArrayList<>();
+    private int limit;
+    private int inFlight;
+
+    @PostConstruct
+    void init() {
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        Gauge.builder("hoa.worker.concurrency.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit of concurrent extractions")
+                .register(meterRegistry);
+        Gauge.builder("hoa.worker.concurrency.inflight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Extractions currently in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes a slot if the number of extractions in flight is below the current limit.
+     *
+     * @return Whether a slot was taken.
+     */
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Gives back a slot taken with {@link #tryAcquire()}.
+     */
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * Registers a callback run whenever the limit grows, i.e. when slots may have become available.
+     * Callbacks run outside of the limiter's lock.
+     */
+    public void onLimitIncrease(Runnable callback) {
+        limitIncreaseCallbacks.add(callback);
+    }
+
+    /**
+     * Records the outcome of one upstream call and adjusts the limit accordingly.
+     *
+     * @param latencyNanos The duration of the call.
+     * @param failed       Whether the call failed (error response, timeout, ...).
+     */
+    public void onSample(long latencyNanos, boolean failed) {
+        int previous;
+        int current;
+        synchronized (this) {
+            previous = limit;
+            if (failed || TimeUnit.NANOSECONDS.toMillis(latencyNanos) > latencyThresholdMs) {
+                limit = Math.max(minLimit, (int) (limit * backoffRatio));
+            } else if (inFlight * 2 >= limit) {
+                // Only probe upwards when the current limit is actually being used
+                limit = Math.min(maxLimit, limit + 1);
+            }
+            current = limit;
+        }
+        if (current != previous) {
+            log.debug("Concurrency limit changed from {} to {} (latency {} ms, failed {}).",
+                    previous, current, TimeUnit.NANOSECONDS.toMillis(latencyNanos), failed);
+        }
+        if (current > previous) {
+            limitIncreaseCallbacks.forEach(Runnable::run);
+        }
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+}
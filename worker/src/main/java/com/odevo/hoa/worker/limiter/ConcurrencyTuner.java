@@ -0,0 +1,48 @@
+package com.odevo.hoa.worker.limiter;
+
+import com.odevo.hoa.worker.consumer.MessageConsumer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.amqp.rabbit.listener.SimpleMessageListenerContainer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Periodically aligns the RabbitMQ consumers of the processing queue with the adaptive concurrency limit.
+ * The number of consumers follows the limit, plus `fair.lookahead` consumers whose messages wait in the
+ * FairShareScheduler, and each consumer prefetches `limiter.prefetch-per-consumer` messages. So the total number
+ * of unacknowledged deliveries held by this worker grows and shrinks with the limit instead of piling up behind
+ * a slow Gemini.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ConcurrencyTuner {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final RabbitListenerEndpointRegistry listenerRegistry;
+
+    @Value("${limiter.prefetch-per-consumer:1}")
+    private int prefetchPerConsumer;
+
+    @Value("${fair.lookahead:16}")
+    private int lookahead;
+
+    @Scheduled(fixedDelayString = "${limiter.tune-interval-ms:5000}")
+    public void tune() {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(MessageConsumer.PROCESSING_LISTENER_ID);
+        if (!(container instanceof SimpleMessageListenerContainer simpleContainer) || !simpleContainer.isRunning()) {
+            return;
+        }
+        int consumers = limiter.getLimit() + lookahead;
+        if (simpleContainer.getActiveConsumerCount() != consumers) {
+            log.info("Resizing processing consumers to {} (prefetch {} each).", consumers, prefetchPerConsumer);
+            // New consumers pick up the prefetch count, consumers above the target are stopped
+            simpleContainer.setPrefetchCount(prefetchPerConsumer);
+            simpleContainer.setConcurrentConsumers(consumers);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.odevo.hoa.worker.limiter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out the slots of the AdaptiveConcurrencyLimiter fairly across tenants (associations),
+ * using deficit round-robin. Every listener thread holding a message waits here for a slot. Whenever a slot
+ * becomes available, the tenants with waiting messages take turns: on its turn a tenant may start as many
+ * extractions as its weight (`fair.weights` entries `tenant:weight`, default 1, e.g. `association:42:2` or `backfill:1`).
+ * While other tenants are waiting, a tenant is not granted more than `fair.max-share` of the current limit,
+ * so a bulk upload by one association leaves slots (and Gemini quota) for everyone else. A tenant waiting on
+ * its own takes every slot, and once others arrive it gets no new slots until it is back below its share.
+ * Since RabbitMQ delivers in FIFO order, the processing queue is consumed with `fair.lookahead` consumers
+ * more than the limit, which are the messages the scheduler can choose from.
+ */
+@Component
+@RequiredArgsConstructor
+public class FairShareScheduler {
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${fair.max-share:0.5}")
+    private double maxShare;
+
+    @Value("${fair.weights:}")
+    private List<String> weightEntries;
+
+    private final Map<String, Integer> weights = new HashMap<>();
+    private final Map<String, TenantState> tenants = new HashMap<>();
+    // Tenants with waiting messages, the head has the turn
+    private final Deque<TenantState> activeTenants = new ArrayDeque<>();
+    private int waiting;
+
+    @PostConstruct
+    void init() {
+        for (String entry : weightEntries) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            // The weight follows the last colon, tenant names contain one themselves (association:<id>)
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Invalid fair.weights entry, expected tenant:weight: " + entry);
+            }
+            weights.put(entry.substring(0, separator).trim(), Math.max(1, Integer.parseInt(entry.substring(separator + 1).trim())));
+        }
+        limiter.onLimitIncrease(this::dispatch);
+        Gauge.builder("hoa.worker.fair.waiting", this, FairShareScheduler::getWaiting)
+                .description("Messages waiting for an extraction slot")
+                .register(meterRegistry);
+        Gauge.builder("hoa.worker.fair.tenants", this, FairShareScheduler::getActiveTenants)
+                .description("Tenants with messages waiting for an extraction slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Blocks until the tenant is granted an extraction slot.
+     *
+     * @param tenant The tenant the message belongs to.
+     * @throws InterruptedException if interrupted while waiting, no slot is held then.
+     */
+    public void acquire(String tenant) throws InterruptedException {
+        Waiter waiter = new Waiter();
+        synchronized (this) {
+            TenantState state = tenants.computeIfAbsent(tenant, name -> new TenantState(name, weights.getOrDefault(name, 1)));
+            if (state.waiters.isEmpty()) {
+                activate(state);
+            }
+            state.waiters.add(waiter);
+            waiting++;
+            dispatch();
+            try {
+                while (!waiter.granted) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    release(tenant);
+                } else {
+                    state.waiters.remove(waiter);
+                    waiting--;
+                    if (state.waiters.isEmpty()) {
+                        deactivate(state);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Gives back a slot granted with {@link #acquire(String)}.
+     */
+    public synchronized void release(String tenant) {
+        TenantState state = tenants.get(tenant);
+        state.inFlight--;
+        limiter.release();
+        if (state.inFlight == 0 && state.waiters.isEmpty()) {
+            tenants.remove(tenant);
+        }
+        dispatch();
+    }
+
+    /**
+     * Grants waiting messages as long as the limiter has slots and some tenant is below its cap.
+     */
+    private synchronized void dispatch() {
+        boolean granted = false;
+        while (!activeTenants.isEmpty()) {
+            TenantState state = nextTenant();
+            if (state == null || !limiter.tryAcquire()) {
+                break;
+            }
+            state.waiters.poll().granted = true;
+            waiting--;
+            state.inFlight++;
+            state.deficit--;
+            if (state.waiters.isEmpty()) {
+                deactivate(state);
+            }
+            granted = true;
+        }
+        if (granted) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Deficit round-robin with a cost of one per message: the tenant having the turn keeps it while it has credit
+     * and is below its cap, otherwise the turn passes on to the next tenant. The cap only applies while more than
+     * one tenant is waiting, otherwise the slots above it would sit idle.
+     *
+     * @return The tenant to grant a slot to, or null if every waiting tenant is at its cap.
+     */
+    private TenantState nextTenant() {
+        int cap = activeTenants.size() > 1 ? Math.max(1, (int) Math.ceil(limiter.getLimit() * maxShare)) : Integer.MAX_VALUE;
+        // Weights are at least 1, so within one full round every tenant below its cap gets a slot
+        for (int turn = 0; turn <= activeTenants.size(); turn++) {
+            TenantState head = activeTenants.peekFirst();
+            if (head.deficit >= 1 && head.inFlight < cap) {
+                return head;
+            }
+            activeTenants.addLast(activeTenants.pollFirst());
+            giveTurn(activeTenants.peekFirst());
+        }
+        return null;
+    }
+
+    private void activate(TenantState state) {
+        activeTenants.addLast(state);
+        if (activeTenants.size() == 1) {
+            giveTurn(state);
+        }
+    }
+
+    private void deactivate(TenantState state) {
+        boolean hadTurn = activeTenants.peekFirst() == state;
+        activeTenants.remove(state);
+        state.deficit = 0;
+        if (state.inFlight == 0) {
+            tenants.remove(state.name);
+        }
+        if (hadTurn && !activeTenants.isEmpty()) {
+            giveTurn(activeTenants.peekFirst());
+        }
+    }
+
+    // Credit does not carry over between turns, so a tenant held back by its cap cannot build up a burst
+    private void giveTurn(TenantState state) {
+        state.deficit = state.weight;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting;
+    }
+
+    public synchronized int getActiveTenants() {
+        return activeTenants.size();
+    }
+
+    private static class TenantState {
+        private final String name;
+        private final int weight;
+        private final Deque<Waiter> waiters = new ArrayDeque<>();
+        private int inFlight;
+        private int deficit;
+
+        TenantState(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    private static class Waiter {
+        private boolean granted;
+    }
+}
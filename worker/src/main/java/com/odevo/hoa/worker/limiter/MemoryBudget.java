@@ -0,0 +1,126 @@
+package com.odevo.hoa.worker.limiter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the heap taken up by the PDFs in flight to `memory.budget.heap-fraction` of the max heap.
+ * Every PDF reserves its expected footprint before it is downloaded and gives it back once its extraction is done
+ * (see PdfContentService), so the number of PDFs processed at once follows their size: many small ones, or a few
+ * large ones. Reservations are granted in arrival order, so a large PDF is not starved by a stream of small ones.
+ * The capacity, the reserved bytes and the waiting reservations are exposed as metrics.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class MemoryBudget {
+
+    private final MeterRegistry meterRegistry;
+
+    @Value("${memory.budget.heap-fraction:0.5}")
+    private double heapFraction;
+
+    private final Deque<Reservation> waiters = new ArrayDeque<>();
+    private long capacity;
+    private long reserved;
+    private Timer waitTimer;
+
+    @PostConstruct
+    void init() {
+        capacity = (long) (Runtime.getRuntime().maxMemory() * heapFraction);
+        log.info("Memory budget of the PDFs in flight: {} MB.", capacity / (1024 * 1024));
+        waitTimer = Timer.builder("hoa.worker.memory.budget.wait")
+                .description("Time PDFs waited for their memory reservation")
+                .register(meterRegistry);
+        Gauge.builder("hoa.worker.memory.budget.capacity", this, MemoryBudget::getCapacity)
+                .description("Heap bytes the PDFs in flight may take up")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("hoa.worker.memory.budget.reserved", this, MemoryBudget::getReserved)
+                .description("Heap bytes reserved by the PDFs in flight")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("hoa.worker.memory.budget.waiting", this, MemoryBudget::getWaiting)
+                .description("PDFs waiting for their memory reservation")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Blocks until the bytes can be reserved and all earlier reservations were granted.
+     * A reservation larger than the whole budget waits until nothing else is reserved.
+     *
+     * @param bytes The heap bytes to reserve.
+     * @return The reservation, to be closed when the bytes are no longer used.
+     * @throws InterruptedException if interrupted while waiting, nothing is reserved then.
+     */
+    public Reservation reserve(long bytes) throws InterruptedException {
+        Reservation reservation = new Reservation(Math.min(bytes, capacity));
+        long startNanos = System.nanoTime();
+        synchronized (this) {
+            waiters.addLast(reservation);
+            try {
+                while (waiters.peekFirst() != reservation || reserved + reservation.bytes > capacity) {
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                waiters.remove(reservation);
+                notifyAll(); // the next one may fit now
+                throw e;
+            }
+            waiters.removeFirst();
+            reserved += reservation.bytes;
+            notifyAll(); // the next one may fit as well
+        }
+        waitTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        return reservation;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public synchronized long getReserved() {
+        return reserved;
+    }
+
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    /**
+     * Bytes reserved with {@link #reserve(long)}. Closing gives them back, closing again has no effect.
+     */
+    public final class Reservation implements AutoCloseable {
+        private final long bytes;
+        private boolean released;
+
+        private Reservation(long bytes) {
+            this.bytes = bytes;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        @Override
+        public void close() {
+            synchronized (MemoryBudget.this) {
+                if (!released) {
+                    released = true;
+                    reserved -= bytes;
+                    MemoryBudget.this.notifyAll();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.odevo.hoa.worker.migration;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.flyway.FlywayAutoConfiguration;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+
+/**
+ * One-shot application applying the Flyway migrations and exiting.
+ * Runs before the workers (see the `hoa-migrate` service in docker-compose.yml), so that migrating
+ * and validating the schema is not part of every worker start.
+ * Only the DataSource and Flyway are configured, none of the worker's components are loaded.
+ * Deliberately not a @Configuration, so the worker's component scan does not pick it up.
+ */
+@ImportAutoConfiguration({DataSourceAutoConfiguration.class, FlywayAutoConfiguration.class})
+public class MigrationApplication {
+    public static void main(String[] args) {
+        SpringApplication application = new SpringApplication(MigrationApplication.class);
+        application.setAdditionalProfiles("migrate");
+        System.exit(SpringApplication.exit(application.run(args)));
+    }
+}
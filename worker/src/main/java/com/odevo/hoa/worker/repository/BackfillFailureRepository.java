@@ -0,0 +1,28 @@
+package com.odevo.hoa.worker.repository;
+
+import com.odevo.hoa.common.entity.BackfillFailure;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Repository for `BackfillFailure` entity, read by the BackfillScheduler's stale scan (see ExtractedDataRepository).
+ */
+@Repository
+public interface BackfillFailureRepository extends JpaRepository<BackfillFailure, String> {
+
+    /**
+     * Counts a failed re-extraction of the file. Attempts made with an earlier version are not counted.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO backfill_failure (pdf_file_name, extraction_version, attempts, failed_at) "
+            + "VALUES (:pdfFileName, :version, 1, now()) "
+            + "ON CONFLICT (pdf_file_name) DO UPDATE SET attempts = CASE WHEN backfill_failure.extraction_version = EXCLUDED.extraction_version "
+            + "THEN backfill_failure.attempts + 1 ELSE 1 END, extraction_version = EXCLUDED.extraction_version, failed_at = EXCLUDED.failed_at",
+            nativeQuery = true)
+    void recordFailure(@Param("pdfFileName") String pdfFileName, @Param("version") String version);
+}
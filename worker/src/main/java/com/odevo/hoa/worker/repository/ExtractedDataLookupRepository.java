@@ -0,0 +1,13 @@
+package com.odevo.hoa.worker.repository;
+
+import com.odevo.hoa.common.entity.ExtractedDataLookup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for `ExtractedDataLookup` entity, the file name index of the partitioned extracted data.
+ * Rows are written by a database trigger only, never through this repository.
+ */
+@Repository
+public interface ExtractedDataLookupRepository extends JpaRepository<ExtractedDataLookup, String> {
+}
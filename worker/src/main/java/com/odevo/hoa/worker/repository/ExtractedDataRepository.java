@@ -1,9 +1,13 @@
 package com.odevo.hoa.worker.repository;
 
 import com.odevo.hoa.common.entity.ExtractedData;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -12,5 +16,47 @@ import java.util.UUID;
  */
 @Repository
 public interface ExtractedDataRepository extends JpaRepository<ExtractedData, UUID> {
-    Optional<ExtractedData> findByPdfFileName(String pdfFileName);
+    /**
+     * Finds the extraction of a file. The partition key is read from the lookup table first,
+     * so only the partition holding the row is scanned (runtime partition pruning).
+     */
+    @Query(value = "SELECT e.* FROM extracted_data e "
+            + "WHERE e.pdf_file_name = :pdfFileName AND e.extraction_timestamp = "
+            + "(SELECT l.extraction_timestamp FROM extracted_data_lookup l WHERE l.pdf_file_name = :pdfFileName)",
+            nativeQuery = true)
+    Optional<ExtractedData> findByPdfFileName(@Param("pdfFileName") String pdfFileName);
+
+    /**
+     * Finds the extraction version of a file, without loading the JSON document (pruned like findByPdfFileName).
+     */
+    @Query(value = "SELECT e.extraction_version FROM extracted_data e "
+            + "WHERE e.pdf_file_name = :pdfFileName AND e.extraction_timestamp = "
+            + "(SELECT l.extraction_timestamp FROM extracted_data_lookup l WHERE l.pdf_file_name = :pdfFileName)",
+            nativeQuery = true)
+    Optional<String> findExtractionVersion(@Param("pdfFileName") String pdfFileName);
+
+    /**
+     * Keyset scan over rows extracted with a different version than the given one, leaving out the rows whose
+     * re-extraction with that version failed maxAttempts times already (see BackfillFailureRepository).
+     * Only the columns needed to re-enqueue the row are loaded, never the JSON document.
+     */
+    @Query("SELECT e.id AS id, e.pdfFileName AS pdfFileName, e.originalFileName AS originalFileName "
+            + "FROM ExtractedData e "
+            + "WHERE (e.extractionVersion IS NULL OR e.extractionVersion <> :version) AND e.id > :afterId "
+            + "AND NOT EXISTS (SELECT f FROM BackfillFailure f WHERE f.pdfFileName = e.pdfFileName "
+            + "AND f.extractionVersion = :version AND f.attempts >= :maxAttempts) "
+            + "ORDER BY e.id")
+    List<StaleExtraction> findStaleAfter(@Param("version") String version, @Param("afterId") UUID afterId,
+                                         @Param("maxAttempts") int maxAttempts, Pageable pageable);
+
+    /**
+     * Projection of an extraction that needs to be refreshed.
+     */
+    interface StaleExtraction {
+        UUID getId();
+
+        String getPdfFileName();
+
+        String getOriginalFileName();
+    }
 }
@@ -0,0 +1,12 @@
+package com.odevo.hoa.worker.repository;
+
+import com.odevo.hoa.common.entity.JobCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+/**
+ * Repository for `JobCheckpoint` entity, used by background jobs to persist their progress.
+ */
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+}
@@ -0,0 +1,23 @@
+package com.odevo.hoa.worker.repository;
+
+import com.odevo.hoa.common.entity.LoanFact;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Repository for `LoanFact` entity, the normalized loans of each extraction.
+ */
+@Repository
+public interface LoanFactRepository extends JpaRepository<LoanFact, Long> {
+    List<LoanFact> findByExtractedDataId(UUID extractedDataId);
+
+    @Modifying
+    @Query("DELETE FROM LoanFact f WHERE f.extractedDataId = :extractedDataId")
+    int deleteByExtractedDataId(@Param("extractedDataId") UUID extractedDataId);
+}
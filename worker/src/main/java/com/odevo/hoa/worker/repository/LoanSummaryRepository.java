@@ -0,0 +1,36 @@
+package com.odevo.hoa.worker.repository;
+
+import com.odevo.hoa.common.entity.LoanSummary;
+import com.odevo.hoa.common.entity.LoanSummaryId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Repository for `LoanSummary` entity, the per association and year loan aggregates.
+ * Aggregates are only ever changed by adding deltas in place, which is safe with concurrent workers.
+ */
+@Repository
+public interface LoanSummaryRepository extends JpaRepository<LoanSummary, LoanSummaryId> {
+
+    @Modifying
+    @Query(value = "INSERT INTO loan_summary (association, financial_year, loan_count, total_debt, rated_debt, rate_weighted_debt) "
+            + "VALUES (:association, :financialYear, :loanCount, :totalDebt, :ratedDebt, :rateWeightedDebt) "
+            + "ON CONFLICT (association, financial_year) DO UPDATE SET "
+            + "loan_count = loan_summary.loan_count + EXCLUDED.loan_count, "
+            + "total_debt = loan_summary.total_debt + EXCLUDED.total_debt, "
+            + "rated_debt = loan_summary.rated_debt + EXCLUDED.rated_debt, "
+            + "rate_weighted_debt = loan_summary.rate_weighted_debt + EXCLUDED.rate_weighted_debt", nativeQuery = true)
+    void addDelta(@Param("association") String association, @Param("financialYear") int financialYear,
+                  @Param("loanCount") long loanCount, @Param("totalDebt") BigDecimal totalDebt,
+                  @Param("ratedDebt") BigDecimal ratedDebt, @Param("rateWeightedDebt") BigDecimal rateWeightedDebt);
+
+    @Modifying
+    @Query(value = "DELETE FROM loan_summary WHERE association = :association AND financial_year = :financialYear "
+            + "AND loan_count <= 0", nativeQuery = true)
+    void deleteIfEmpty(@Param("association") String association, @Param("financialYear") int financialYear);
+}
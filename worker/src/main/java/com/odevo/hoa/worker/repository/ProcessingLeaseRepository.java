@@ -0,0 +1,59 @@
+package com.odevo.hoa.worker.repository;
+
+import com.odevo.hoa.common.entity.ProcessingLease;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository for `ProcessingLease` entity. Expiry is always evaluated with the database clock,
+ * so the clocks of the workers do not need to agree.
+ */
+@Repository
+public interface ProcessingLeaseRepository extends JpaRepository<ProcessingLease, String> {
+
+    /**
+     * Takes the lease if nobody holds it or the holder's lease expired.
+     *
+     * @return 1 if the lease was taken, 0 if another attempt holds it.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "INSERT INTO processing_lease (pdf_file_name, token, owner, acquired_at, heartbeat_at, expires_at) "
+            + "VALUES (:pdfFileName, :token, :owner, now(), now(), now() + make_interval(secs => :ttlMillis / 1000.0)) "
+            + "ON CONFLICT (pdf_file_name) DO UPDATE SET token = EXCLUDED.token, owner = EXCLUDED.owner, "
+            + "acquired_at = EXCLUDED.acquired_at, heartbeat_at = EXCLUDED.heartbeat_at, expires_at = EXCLUDED.expires_at "
+            + "WHERE processing_lease.expires_at < now()", nativeQuery = true)
+    int tryAcquire(@Param("pdfFileName") String pdfFileName, @Param("token") UUID token,
+                   @Param("owner") String owner, @Param("ttlMillis") long ttlMillis);
+
+    /**
+     * Extends a lease that is still held by the given attempt.
+     *
+     * @return 1 if renewed, 0 if the lease was lost.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "UPDATE processing_lease SET heartbeat_at = now(), expires_at = now() + make_interval(secs => :ttlMillis / 1000.0) "
+            + "WHERE pdf_file_name = :pdfFileName AND token = :token", nativeQuery = true)
+    int renew(@Param("pdfFileName") String pdfFileName, @Param("token") UUID token, @Param("ttlMillis") long ttlMillis);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM ProcessingLease l WHERE l.pdfFileName = :pdfFileName AND l.token = :token")
+    int release(@Param("pdfFileName") String pdfFileName, @Param("token") UUID token);
+
+    /**
+     * Locks the lease of an attempt until the end of the transaction, so it cannot be taken over meanwhile.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    Optional<ProcessingLease> findByPdfFileNameAndToken(String pdfFileName, UUID token);
+}
@@ -0,0 +1,172 @@
+package com.odevo.hoa.worker.scheduler;
+
+import com.odevo.hoa.common.dto.PdfProcessRequest;
+import com.odevo.hoa.common.entity.JobCheckpoint;
+import com.odevo.hoa.common.util.Constants;
+import com.odevo.hoa.worker.repository.ExtractedDataRepository;
+import com.odevo.hoa.worker.repository.ExtractedDataRepository.StaleExtraction;
+import com.odevo.hoa.worker.repository.JobCheckpointRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Background job re-enqueuing extractions made with an outdated model or schema.
+ * Stale rows are visited in keyset (id) order and published to the low-priority backfill queue.
+ * The position is checkpointed per extraction version, so the scan resumes after a restart and
+ * starts over automatically once Constants.EXTRACTION_VERSION changes.
+ * The rate is bounded by `backfill.batch-size` per `backfill.interval-ms`, and no work is enqueued
+ * while live uploads are waiting or while the backfill queue still holds `backfill.max-pending` messages.
+ * Re-extractions that failed leave their rows stale, so once a pass has drained from the backfill queue and
+ * `backfill.repass-delay-ms` has passed, the scan starts over if any stale rows remain. A row whose re-extraction
+ * failed `backfill.max-attempts` times with the current version is left out, so it does not cost a Gemini call
+ * on every pass.
+ * An advisory lock makes sure only one worker instance enqueues at a time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BackfillScheduler {
+
+    private static final long ADVISORY_LOCK_KEY = 0x686f615f6261636bL; // "hoa_back"
+    private static final String JOB_NAME_PREFIX = "extraction-backfill:";
+    private static final String PASS_COMPLETED = "DONE";
+    private static final UUID KEYSET_START = new UUID(0L, 0L);
+
+    private final ExtractedDataRepository extractedDataRepository;
+    private final JobCheckpointRepository jobCheckpointRepository;
+    private final RabbitTemplate rabbitTemplate;
+    private final AmqpAdmin amqpAdmin;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${backfill.enabled:true}")
+    private boolean enabled;
+
+    @Value("${backfill.batch-size:10}")
+    private int batchSize;
+
+    @Value("${backfill.max-pending:20}")
+    private int maxPending;
+
+    @Value("${backfill.live-queue-threshold:0}")
+    private int liveQueueThreshold;
+
+    @Value("${backfill.repass-delay-ms:3600000}")
+    private long repassDelayMs;
+
+    @Value("${backfill.max-attempts:3}")
+    private int maxAttempts;
+
+    /**
+     * Enqueues the next batch of stale extractions, if the rate ceiling and the live traffic allow it.
+     */
+    @Scheduled(fixedDelayString = "${backfill.interval-ms:60000}", initialDelayString = "${backfill.initial-delay-ms:30000}")
+    public void enqueueStaleExtractions() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!tryLock(connection)) {
+                    log.debug("Backfill is running on another worker, skipping.");
+                    return null;
+                }
+                try {
+                    enqueueNextBatch();
+                } finally {
+                    unlock(connection);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Error while enqueuing stale extractions: {}", e.getMessage(), e);
+        }
+    }
+
+    private void enqueueNextBatch() {
+        long liveDepth = queueDepth(Constants.RABBITMQ_QUEUE_NAME);
+        if (liveDepth > liveQueueThreshold) {
+            log.debug("Backfill paused, {} live requests waiting.", liveDepth);
+            return;
+        }
+        long backfillDepth = queueDepth(Constants.RABBITMQ_BACKFILL_QUEUE_NAME);
+        int capacity = (int) Math.min(batchSize, maxPending - backfillDepth);
+        if (capacity <= 0) {
+            log.debug("Backfill paused, backfill queue is full.");
+            return;
+        }
+
+        String jobName = JOB_NAME_PREFIX + Constants.EXTRACTION_VERSION;
+        JobCheckpoint checkpoint = jobCheckpointRepository.findById(jobName)
+                .orElseGet(() -> JobCheckpoint.builder().jobName(jobName).build());
+        boolean repass = PASS_COMPLETED.equals(checkpoint.getPosition());
+        if (repass && (backfillDepth > 0 || checkpoint.getUpdatedAt() != null
+                && checkpoint.getUpdatedAt().plus(Duration.ofMillis(repassDelayMs)).isAfter(LocalDateTime.now()))) {
+            return;
+        }
+
+        UUID afterId = repass || checkpoint.getPosition() == null ? KEYSET_START : UUID.fromString(checkpoint.getPosition());
+        List<StaleExtraction> staleExtractions = extractedDataRepository.findStaleAfter(
+                Constants.EXTRACTION_VERSION, afterId, maxAttempts, PageRequest.of(0, capacity));
+        if (repass && !staleExtractions.isEmpty()) {
+            log.info("Backfill pass restarted for version {}, stale extractions remain.", Constants.EXTRACTION_VERSION);
+        }
+
+        for (StaleExtraction stale : staleExtractions) {
+            PdfProcessRequest request = new PdfProcessRequest(stale.getPdfFileName(), stale.getOriginalFileName(), Constants.MINIO_BUCKET_NAME, null);
+            rabbitTemplate.convertAndSend(Constants.RABBITMQ_EXCHANGE_NAME, Constants.RABBITMQ_BACKFILL_ROUTING_KEY, request);
+            afterId = stale.getId();
+        }
+
+        boolean passCompleted = staleExtractions.size() < capacity;
+        checkpoint.setPosition(passCompleted ? PASS_COMPLETED : afterId.toString());
+        checkpoint.setUpdatedAt(LocalDateTime.now());
+        jobCheckpointRepository.save(checkpoint);
+
+        if (repass && staleExtractions.isEmpty()) {
+            return; // nothing left over, checked again after the next delay
+        }
+        log.info("Backfill enqueued {} stale extractions for version {}.", staleExtractions.size(), Constants.EXTRACTION_VERSION);
+        if (passCompleted) {
+            log.info("Backfill pass completed for version {}.", Constants.EXTRACTION_VERSION);
+        }
+    }
+
+    private long queueDepth(String queueName) {
+        QueueInformation info = amqpAdmin.getQueueInfo(queueName);
+        return info == null ? 0 : info.getMessageCount();
+    }
+
+    private boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, ADVISORY_LOCK_KEY);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, ADVISORY_LOCK_KEY);
+            statement.execute();
+        }
+    }
+}
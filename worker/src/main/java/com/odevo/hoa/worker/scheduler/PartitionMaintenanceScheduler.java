@@ -0,0 +1,193 @@
+package com.odevo.hoa.worker.scheduler;
+
+import com.odevo.hoa.worker.service.MinioService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Background job maintaining the monthly partitions of `extracted_data`.
+ * Partitions are created `partition.months-ahead` months in advance, and partitions older than
+ * `partition.archive-after-months` are exported to MinIO as gzipped CSV, detached and dropped.
+ * Archived file names stay in `extracted_data_lookup` (with `archived_partition` set), so they are still
+ * deduplicated, and their loan figures stay in the analytics.
+ * Rows only ever leave a cold partition (a re-extraction moves them to the current month), so the export
+ * can run without locks; a row moved out meanwhile is merely a stale line in the archive.
+ * An advisory lock makes sure only one worker instance runs the maintenance at a time.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PartitionMaintenanceScheduler {
+
+    private static final long ADVISORY_LOCK_KEY = 0x686f615f70617274L; // "hoa_part"
+    private static final Pattern PARTITION_NAME = Pattern.compile("extracted_data_p(\\d{4})_(\\d{2})");
+    private static final String ARCHIVE_PREFIX = "extracted_data/";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final MinioService minioService;
+
+    @Value("${partition.months-ahead:3}")
+    private int monthsAhead;
+
+    @Value("${partition.archive-enabled:true}")
+    private boolean archiveEnabled;
+
+    @Value("${partition.archive-after-months:24}")
+    private int archiveAfterMonths;
+
+    @Value("${partition.archive-bucket:hoa-archive}")
+    private String archiveBucket;
+
+    /**
+     * Creates upcoming partitions and archives cold ones. Runs at startup and then periodically.
+     */
+    @Scheduled(fixedDelayString = "${partition.interval-ms:3600000}", initialDelayString = "${partition.initial-delay-ms:0}")
+    public void maintainPartitions() {
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                if (!tryLock(connection)) {
+                    log.debug("Partition maintenance is running on another worker, skipping.");
+                    return null;
+                }
+                try {
+                    createPartitions(connection);
+                    if (archiveEnabled) {
+                        archiveColdPartitions(connection);
+                    }
+                } finally {
+                    unlock(connection);
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            log.error("Error during partition maintenance: {}", e.getMessage(), e);
+        }
+    }
+
+    private void createPartitions(Connection connection) throws SQLException {
+        LocalDate currentMonth = YearMonth.now(ZoneOffset.UTC).atDay(1);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT create_extracted_data_partitions(?, ?)")) {
+            statement.setObject(1, currentMonth);
+            statement.setObject(2, currentMonth.plusMonths(monthsAhead));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                int created = resultSet.getInt(1);
+                if (created > 0) {
+                    log.info("Created {} extracted_data partitions up to {}.", created, currentMonth.plusMonths(monthsAhead));
+                }
+            }
+        }
+    }
+
+    private void archiveColdPartitions(Connection connection) throws SQLException {
+        YearMonth oldestKept = YearMonth.now(ZoneOffset.UTC).minusMonths(archiveAfterMonths);
+        for (String partition : listPartitions(connection)) {
+            Matcher matcher = PARTITION_NAME.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (month.isBefore(oldestKept)) {
+                archivePartition(connection, partition, month);
+            }
+        }
+    }
+
+    private List<String> listPartitions(Connection connection) throws SQLException {
+        List<String> partitions = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT c.relname FROM pg_inherits i "
+                     + "JOIN pg_class c ON c.oid = i.inhrelid "
+                     + "WHERE i.inhparent = 'extracted_data'::regclass ORDER BY c.relname")) {
+            while (resultSet.next()) {
+                partitions.add(resultSet.getString(1));
+            }
+        }
+        return partitions;
+    }
+
+    /**
+     * Exports a partition to MinIO, then detaches and drops it in one short transaction.
+     * Nothing is dropped unless the upload succeeded.
+     */
+    private void archivePartition(Connection connection, String partition, YearMonth month) throws SQLException {
+        String objectName = ARCHIVE_PREFIX + partition + ".csv.gz";
+        Path archive = null;
+        try {
+            archive = Files.createTempFile(partition, ".csv.gz");
+            long rows;
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+                rows = connection.unwrap(PGConnection.class).getCopyAPI()
+                        .copyOut("COPY " + partition + " TO STDOUT WITH (FORMAT csv, HEADER)", out);
+            }
+            minioService.uploadFile(archiveBucket, objectName, archive, "application/gzip");
+
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE extracted_data DETACH PARTITION " + partition);
+                statement.executeUpdate("UPDATE extracted_data_lookup SET archived_partition = '" + partition + "' "
+                        + "WHERE id IN (SELECT id FROM " + partition + ")");
+                statement.execute("DROP TABLE " + partition);
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+            log.info("Archived partition {} ({} rows of {}) to {}/{}.", partition, rows, month, archiveBucket, objectName);
+        } catch (SQLException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error archiving partition {}: {}", partition, e.getMessage(), e);
+        } finally {
+            if (archive != null) {
+                try {
+                    Files.deleteIfExists(archive);
+                } catch (Exception e) {
+                    log.warn("Could not delete temporary archive {}: {}", archive, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private boolean tryLock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, ADVISORY_LOCK_KEY);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    private void unlock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_unlock(?)")) {
+            statement.setLong(1, ADVISORY_LOCK_KEY);
+            statement.execute();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.odevo.hoa.worker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.odevo.hoa.common.entity.ExtractedData;
+import com.odevo.hoa.common.entity.ExtractedDataLookup;
+import com.odevo.hoa.common.entity.ProcessingLease;
+import com.odevo.hoa.common.util.Constants;
+import com.odevo.hoa.worker.repository.ExtractedDataLookupRepository;
+import com.odevo.hoa.worker.repository.ExtractedDataRepository;
+import com.odevo.hoa.worker.repository.ProcessingLeaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Service persisting the result of an extraction, together with everything derived from it, in one transaction.
+ * Kept apart from the PdfProcessingService so that no database connection is held during the Gemini call.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ExtractionPersistenceService {
+
+    private final ExtractedDataRepository extractedDataRepository;
+    private final ExtractedDataLookupRepository extractedDataLookupRepository;
+    private final ProcessingLeaseRepository processingLeaseRepository;
+    private final LoanAnalyticsService loanAnalyticsService;
+
+    /**
+     * Stores an extraction, replacing any earlier extraction of the same file, and updates the loan analytics.
+     * An earlier extraction whose partition was archived is replaced by a new row, its loans are carried over
+     * from the archived id.
+     * The result is only stored while the attempt still holds its processing lease, which is released with it.
+     *
+     * @param pdfFileName      The stored file name of the PDF.
+     * @param originalFileName The original file name of the PDF.
+     * @param jsonData         The extracted JSON document.
+     * @param vectorData       The vector data.
+     * @param leaseToken       The processing lease of the attempt.
+     * @return The persisted entity.
+     * @throws StaleAttemptException if the lease was taken over by another attempt.
+     */
+    @Transactional
+    public ExtractedData persist(String pdfFileName, String originalFileName, JsonNode jsonData, String vectorData, UUID leaseToken) {
+        // The locked lease cannot be taken over until this transaction ends
+        processingLeaseRepository.findByPdfFileNameAndToken(pdfFileName, leaseToken)
+                .ifPresentOrElse(processingLeaseRepository::delete, () -> {
+                    throw new StaleAttemptException("Lease " + leaseToken + " on " + pdfFileName + " is no longer held");
+                });
+        return store(pdfFileName, originalFileName, jsonData, vectorData);
+    }
+
+    /**
+     * Stores a batch of extractions in one transaction, used by the bulk ingest. Each extraction is stored as
+     * by {@link #persist}, except that one whose lease is no longer held is skipped instead of failing the batch.
+     *
+     * @param extractions The extractions to store, each with the processing lease of its attempt.
+     * @return The file names of the extractions that were stored.
+     */
+    @Transactional
+    public Set<String> persistAll(List<PendingExtraction> extractions) {
+        Set<String> stored = new HashSet<>();
+        for (PendingExtraction extraction : extractions) {
+            Optional<ProcessingLease> lease = processingLeaseRepository.findByPdfFileNameAndToken(
+                    extraction.getPdfFileName(), extraction.getLeaseToken());
+            if (lease.isEmpty()) {
+                log.warn("Lease {} on {} is no longer held, discarding the result.", extraction.getLeaseToken(), extraction.getPdfFileName());
+                continue;
+            }
+            processingLeaseRepository.delete(lease.get());
+            store(extraction.getPdfFileName(), extraction.getOriginalFileName(), extraction.getJsonData(), extraction.getVectorData());
+            stored.add(extraction.getPdfFileName());
+        }
+        return stored;
+    }
+
+    private ExtractedData store(String pdfFileName, String originalFileName, JsonNode jsonData, String vectorData) {
+        ExtractedData extracted = extractedDataRepository.findByPdfFileName(pdfFileName)
+                .orElseGet(() -> ExtractedData.builder().pdfFileName(pdfFileName).build());
+        extracted.setOriginalFileName(originalFileName);
+        extracted.setJsonData(jsonData.toString());
+        extracted.setVectorData(vectorData);
+        extracted.setExtractionTimestamp(LocalDateTime.now());
+        extracted.setExtractionVersion(Constants.EXTRACTION_VERSION);
+
+        UUID previousId = extracted.getId();
+        if (previousId == null) {
+            previousId = extractedDataLookupRepository.findById(pdfFileName)
+                    .map(ExtractedDataLookup::getId)
+                    .orElse(null);
+        }
+
+        ExtractedData saved = extractedDataRepository.save(extracted);
+        loanAnalyticsService.replaceLoans(previousId != null ? previousId : saved.getId(), saved.getId(), jsonData);
+        log.info("Extracted data saved to database for PDF: {}", pdfFileName);
+        return saved;
+    }
+}
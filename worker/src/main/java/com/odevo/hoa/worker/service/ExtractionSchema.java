@@ -0,0 +1,208 @@
+package com.odevo.hoa.worker.service;
+
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * The JSON schema of an extraction, as given to Gemini in the prompt, compiled once at startup into a validator of
+ * the extracted JSON. The validator covers the keywords the schema uses: type (object, array, string, number,
+ * integer, boolean), properties, required, items and nullable; descriptive ones such as example are ignored, an
+ * unsupported type fails the startup.
+ */
+@Component
+public class ExtractionSchema {
+
+    // NOTE: bump Constants.EXTRACTION_SCHEMA_VERSION when changing the schema or prompt, so old rows get re-extracted
+    public static final String SCHEMA = """
+            {
+              "type": "object",
+              "properties": {
+                "title": { "type": "string" },
+                "association": { "type": "string", "nullable": true }, // Name of the housing association
+                "auditor": { "type": "string", "nullable": true },
+                "summary": { "type": "string" },
+                "keywords": { "type": "array", "items": { "type": "string" } },
+                "board_members": {
+                  "type": "array",
+                  "items": {
+                    "type": "object",
+                    "properties": {
+                      "name": { "type": "string" },
+                      "role": { "type": "string", "nullable": true } // Role might not always be available
+                    },
+                    "required": ["name"] // Name is required, role is optional
+                  }
+                },
+                "financial_year": { "type": "string", "example": "2021-2022" },
+                "loans": {
+                  "type": "array",
+                  "items": {
+                    "type": "object",
+                    "properties": {
+                      "debt": { "type": "string" },
+                      "interrest_rate": { "type": "string", "nullable": true } // Role might not always be available
+                    },
+                    "required": ["debt"]
+                  }
+                }
+              },
+              "required": ["title", "summary", "keywords", "board_members", "financial_year", "loans"]
+            }
+            """;
+
+    private final ObjectNode schema;
+    private final Rule rule;
+
+    public ExtractionSchema(ObjectMapper objectMapper) throws IOException {
+        this.schema = (ObjectNode) objectMapper.reader().with(JsonReadFeature.ALLOW_JAVA_COMMENTS).readTree(SCHEMA);
+        this.rule = compile(schema, "");
+    }
+
+    /**
+     * @return The names of the top-level fields, in schema order.
+     */
+    public Set<String> getFields() {
+        Set<String> fields = new LinkedHashSet<>();
+        schema.path("properties").fieldNames().forEachRemaining(fields::add);
+        return fields;
+    }
+
+    /**
+     * Checks an extraction against the schema.
+     *
+     * @param extraction The extracted JSON.
+     * @return The violations, empty if the extraction is valid.
+     */
+    public List<SchemaViolation> validate(JsonNode extraction) {
+        List<SchemaViolation> violations = new ArrayList<>();
+        rule.check(extraction, "", violations);
+        return violations;
+    }
+
+    /**
+     * Checks one top-level field of an extraction.
+     *
+     * @param field The name of the field.
+     * @param value The extracted value, null if missing.
+     * @return The violations within the field, empty if it is valid.
+     */
+    public List<SchemaViolation> validateField(String field, JsonNode value) {
+        ObjectNode extraction = schema.objectNode();
+        if (value != null) {
+            extraction.set(field, value);
+        }
+        return validate(extraction).stream().filter(violation -> field.equals(violation.getField())).toList();
+    }
+
+    /**
+     * @param fields Top-level fields of the schema.
+     * @return The schema restricted to these fields, as JSON text.
+     */
+    public String subSchema(Collection<String> fields) {
+        ObjectNode subSchema = schema.deepCopy();
+        ((ObjectNode) subSchema.get("properties")).retain(fields);
+        ArrayNode required = subSchema.putArray("required");
+        schema.path("required").forEach(name -> {
+            if (fields.contains(name.asText())) {
+                required.add(name);
+            }
+        });
+        return subSchema.toPrettyString();
+    }
+
+    @FunctionalInterface
+    private interface Rule {
+        void check(JsonNode value, String path, List<SchemaViolation> violations);
+    }
+
+    private static Rule compile(JsonNode schema, String location) {
+        String type = schema.path("type").asText("");
+        Rule typeRule = switch (type) {
+            case "object" -> compileObject(schema, location);
+            case "array" -> compileArray(schema, location);
+            case "string" -> typeCheck(JsonNode::isTextual, "a string");
+            case "number" -> typeCheck(JsonNode::isNumber, "a number");
+            case "integer" -> typeCheck(JsonNode::isIntegralNumber, "an integer");
+            case "boolean" -> typeCheck(JsonNode::isBoolean, "a boolean");
+            default -> throw new IllegalStateException("Unsupported type '" + type + "' in the extraction schema at " + location);
+        };
+        boolean nullable = schema.path("nullable").asBoolean(false);
+        return (value, path, violations) -> {
+            if (value.isNull()) {
+                if (!nullable) {
+                    violations.add(violation(path, "must not be null"));
+                }
+                return;
+            }
+            typeRule.check(value, path, violations);
+        };
+    }
+
+    private static Rule compileObject(JsonNode schema, String location) {
+        Map<String, Rule> properties = new LinkedHashMap<>();
+        schema.path("properties").fields().forEachRemaining(property ->
+                properties.put(property.getKey(), compile(property.getValue(), location + "/" + property.getKey())));
+        List<String> required = new ArrayList<>();
+        schema.path("required").forEach(name -> required.add(name.asText()));
+        return (value, path, violations) -> {
+            if (!value.isObject()) {
+                violations.add(violation(path, "must be an object"));
+                return;
+            }
+            for (String name : required) {
+                if (!value.has(name)) {
+                    violations.add(violation(path + "/" + name, "is required"));
+                }
+            }
+            properties.forEach((name, propertyRule) -> {
+                JsonNode property = value.get(name);
+                if (property != null) {
+                    propertyRule.check(property, path + "/" + name, violations);
+                }
+            });
+        };
+    }
+
+    private static Rule compileArray(JsonNode schema, String location) {
+        Rule itemRule = schema.has("items") ? compile(schema.get("items"), location + "/items") : (value, path, violations) -> {
+        };
+        return (value, path, violations) -> {
+            if (!value.isArray()) {
+                violations.add(violation(path, "must be an array"));
+                return;
+            }
+            for (int i = 0; i < value.size(); i++) {
+                itemRule.check(value.get(i), path + "/" + i, violations);
+            }
+        };
+    }
+
+    private static Rule typeCheck(Predicate<JsonNode> isType, String typeName) {
+        return (value, path, violations) -> {
+            if (!isType.test(value)) {
+                violations.add(violation(path, "must be " + typeName));
+            }
+        };
+    }
+
+    private static SchemaViolation violation(String path, String message) {
+        // The path starts with the top-level field, e.g. /loans/2/debt, or is empty for the extraction itself
+        int end = path.indexOf('/', 1);
+        String field = path.isEmpty() ? "" : path.substring(1, end < 0 ? path.length() : end);
+        return new SchemaViolation(field, path, message);
+    }
+}
@@ -0,0 +1,157 @@
+package com.odevo.hoa.worker.service;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Builds a JSON object from fragments arriving one by one, using Jackson's non-blocking parser.
+ * Every fragment is parsed as soon as it is fed, so malformed output (or output that is not a JSON object)
+ * fails on the fragment introducing the error instead of after the whole response was received.
+ * The top-level fields parsed completely before an error can still be salvaged.
+ * Not thread safe, feed the fragments of one document in order.
+ */
+public class IncrementalJsonReader {
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final JsonNodeFactory nodeFactory;
+    private final Deque<JsonNode> containers = new ArrayDeque<>();
+    private String fieldName;
+    private String topLevelFieldName;
+    private final Set<String> completedFields = new LinkedHashSet<>();
+    private ObjectNode root;
+    private boolean rootCompleted;
+    private long bytesFed;
+
+    public IncrementalJsonReader(ObjectMapper objectMapper) throws IOException {
+        this.parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.nodeFactory = objectMapper.getNodeFactory();
+    }
+
+    /**
+     * Parses the next fragment of the document.
+     *
+     * @param fragment The next piece of the JSON text.
+     * @throws JsonParseException if the document is malformed so far.
+     */
+    public void feed(String fragment) throws IOException {
+        byte[] bytes = fragment.getBytes(StandardCharsets.UTF_8);
+        feeder.feedInput(bytes, 0, bytes.length);
+        bytesFed += bytes.length;
+        drain();
+    }
+
+    /**
+     * Ends the input and returns the document.
+     *
+     * @return The parsed JSON object.
+     * @throws JsonParseException if the document is malformed or incomplete.
+     */
+    public ObjectNode complete() throws IOException {
+        feeder.endOfInput();
+        drain();
+        if (!rootCompleted) {
+            throw new JsonParseException(parser, "Incomplete JSON object after " + bytesFed + " bytes");
+        }
+        return root;
+    }
+
+    /**
+     * Returns what was parsed completely so far, e.g. after a parse error: the top-level fields whose value was
+     * closed before. A field cut off by the error is left out, even if what was parsed of it looks complete.
+     *
+     * @return The complete fields, an empty object if there are none.
+     */
+    public ObjectNode salvage() {
+        ObjectNode salvaged = nodeFactory.objectNode();
+        if (root != null) {
+            for (String name : completedFields) {
+                salvaged.set(name, root.get(name).deepCopy());
+            }
+        }
+        return salvaged;
+    }
+
+    public long getBytesFed() {
+        return bytesFed;
+    }
+
+    private void drain() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            if (rootCompleted) {
+                throw new JsonParseException(parser, "Unexpected content after the JSON object: " + token);
+            }
+            switch (token) {
+                case START_OBJECT -> push(nodeFactory.objectNode());
+                case START_ARRAY -> push(nodeFactory.arrayNode());
+                case END_OBJECT, END_ARRAY -> {
+                    containers.pop();
+                    rootCompleted = containers.isEmpty();
+                    if (containers.size() == 1) {
+                        completedFields.add(topLevelFieldName);
+                    }
+                }
+                case FIELD_NAME -> {
+                    fieldName = parser.currentName();
+                    if (containers.size() == 1) {
+                        topLevelFieldName = fieldName;
+                    }
+                }
+                case VALUE_STRING -> add(nodeFactory.textNode(parser.getText()));
+                case VALUE_NUMBER_INT -> add(switch (parser.getNumberType()) {
+                    case INT -> nodeFactory.numberNode(parser.getIntValue());
+                    case LONG -> nodeFactory.numberNode(parser.getLongValue());
+                    default -> nodeFactory.numberNode(parser.getBigIntegerValue());
+                });
+                case VALUE_NUMBER_FLOAT -> add(nodeFactory.numberNode(parser.getDoubleValue()));
+                case VALUE_TRUE -> add(nodeFactory.booleanNode(true));
+                case VALUE_FALSE -> add(nodeFactory.booleanNode(false));
+                case VALUE_NULL -> add(nodeFactory.nullNode());
+                default -> throw new JsonParseException(parser, "Unexpected token " + token);
+            }
+        }
+    }
+
+    private void push(JsonNode container) throws JsonParseException {
+        if (root == null) {
+            if (!(container instanceof ObjectNode rootObject)) {
+                throw new JsonParseException(parser, "Expected a JSON object, got an array");
+            }
+            root = rootObject;
+        } else {
+            add(container);
+        }
+        containers.push(container);
+    }
+
+    private void add(JsonNode value) throws JsonParseException {
+        JsonNode parent = containers.peek();
+        if (parent == null) {
+            throw new JsonParseException(parser, "Expected a JSON object, got a scalar value");
+        }
+        if (containers.size() == 1 && !value.isContainerNode()) {
+            completedFields.add(topLevelFieldName);
+        }
+        if (parent instanceof ObjectNode object) {
+            object.set(fieldName, value);
+        } else {
+            ((ArrayNode) parent).add(value);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.odevo.hoa.worker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.odevo.hoa.common.entity.LoanFact;
+import com.odevo.hoa.common.entity.LoanSummaryId;
+import com.odevo.hoa.worker.repository.LoanFactRepository;
+import com.odevo.hoa.worker.repository.LoanSummaryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Service normalizing the loans of an extraction into `LoanFact` rows and keeping the `LoanSummary`
+ * aggregates up to date. On a re-extraction the previous loans are subtracted and the new ones added,
+ * so aggregates are never recomputed from the JSON documents.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class LoanAnalyticsService {
+
+    private static final int MAX_ASSOCIATION_LENGTH = 255;
+    private static final String UNKNOWN_ASSOCIATION = "unknown";
+
+    private final LoanFactRepository loanFactRepository;
+    private final LoanSummaryRepository loanSummaryRepository;
+
+    /**
+     * Replaces the loans of an extraction and applies the difference to the aggregates.
+     * Must run in the transaction persisting the extraction itself.
+     *
+     * @param previousId      The id the loans were recorded under so far, differs from the extraction id
+     *                        only when an archived extraction is replaced.
+     * @param extractedDataId The id of the persisted extraction.
+     * @param jsonData        The extracted JSON document.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void replaceLoans(UUID previousId, UUID extractedDataId, JsonNode jsonData) {
+        // Deltas are applied in key order, so concurrent workers lock summary rows in the same order
+        Map<LoanSummaryId, Delta> deltas = new TreeMap<>(Comparator
+                .comparing(LoanSummaryId::getAssociation)
+                .thenComparingInt(LoanSummaryId::getFinancialYear));
+
+        List<LoanFact> previousLoans = loanFactRepository.findByExtractedDataId(previousId);
+        previousLoans.forEach(loan -> deltas.computeIfAbsent(keyOf(loan), key -> new Delta()).subtract(loan));
+        if (!previousLoans.isEmpty()) {
+            loanFactRepository.deleteByExtractedDataId(previousId);
+        }
+
+        List<LoanFact> loans = toLoanFacts(extractedDataId, jsonData);
+        loanFactRepository.saveAll(loans);
+        loans.forEach(loan -> deltas.computeIfAbsent(keyOf(loan), key -> new Delta()).add(loan));
+
+        deltas.forEach((key, delta) -> {
+            loanSummaryRepository.addDelta(key.getAssociation(), key.getFinancialYear(), delta.loanCount,
+                    delta.totalDebt, delta.ratedDebt, delta.rateWeightedDebt);
+            if (delta.loanCount < 0) {
+                loanSummaryRepository.deleteIfEmpty(key.getAssociation(), key.getFinancialYear());
+            }
+        });
+        log.debug("Loan analytics updated for extraction {}: {} previous loans, {} new loans.",
+                extractedDataId, previousLoans.size(), loans.size());
+    }
+
+    private List<LoanFact> toLoanFacts(UUID extractedDataId, JsonNode jsonData) {
+        List<LoanFact> loans = new ArrayList<>();
+        Optional<Integer> financialYear = LoanFigureParser.parseFinancialYear(jsonData.path("financial_year").asText(null));
+        if (financialYear.isEmpty()) {
+            log.debug("No financial year in extraction {}, loans are not included in the analytics.", extractedDataId);
+            return loans;
+        }
+        String association = associationOf(jsonData);
+        for (JsonNode loan : jsonData.path("loans")) {
+            Optional<BigDecimal> debt = LoanFigureParser.parseAmount(loan.path("debt").asText(null));
+            if (debt.isEmpty()) {
+                log.debug("Skipping loan without parsable debt in extraction {}: {}", extractedDataId, loan);
+                continue;
+            }
+            loans.add(LoanFact.builder()
+                    .extractedDataId(extractedDataId)
+                    .association(association)
+                    .financialYear(financialYear.get())
+                    .debt(debt.get())
+                    .interestRate(LoanFigureParser.parseInterestRate(loan.path("interrest_rate").asText(null)).orElse(null))
+                    .build());
+        }
+        return loans;
+    }
+
+    // Without an association name the loans go under one shared key, report titles vary too much to group by
+    private String associationOf(JsonNode jsonData) {
+        String association = jsonData.path("association").asText("");
+        association = association.isBlank() ? UNKNOWN_ASSOCIATION : association.trim();
+        return association.length() > MAX_ASSOCIATION_LENGTH ? association.substring(0, MAX_ASSOCIATION_LENGTH) : association;
+    }
+
+    private static LoanSummaryId keyOf(LoanFact loan) {
+        return new LoanSummaryId(loan.getAssociation(), loan.getFinancialYear());
+    }
+
+    /**
+     * Change of one summary row caused by a (re-)extraction.
+     */
+    private static final class Delta {
+        private long loanCount;
+        private BigDecimal totalDebt = BigDecimal.ZERO;
+        private BigDecimal ratedDebt = BigDecimal.ZERO;
+        private BigDecimal rateWeightedDebt = BigDecimal.ZERO;
+
+        void add(LoanFact loan) {
+            apply(loan, 1);
+        }
+
+        void subtract(LoanFact loan) {
+            apply(loan, -1);
+        }
+
+        private void apply(LoanFact loan, int sign) {
+            BigDecimal debt = sign > 0 ? loan.getDebt() : loan.getDebt().negate();
+            loanCount += sign;
+            totalDebt = totalDebt.add(debt);
+            if (loan.getInterestRate() != null) {
+                ratedDebt = ratedDebt.add(debt);
+                rateWeightedDebt = rateWeightedDebt.add(debt.multiply(loan.getInterestRate()));
+            }
+        }
+    }
+}
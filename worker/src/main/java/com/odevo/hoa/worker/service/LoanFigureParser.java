@@ -0,0 +1,126 @@
+package com.odevo.hoa.worker.service;
+
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses the free-text loan figures Gemini extracts from annual reports, e.g. "12 345 678 kr", "4 500 tkr",
+ * "1,234,567.50 SEK", "2,35 %" or a financial year such as "2021-2022", into numbers.
+ * Both Swedish (space/comma) and English (comma/dot) separators are understood.
+ */
+public final class LoanFigureParser {
+
+    private static final Pattern NUMBER = Pattern.compile("-?\\d[\\d\\s\\u00a0.,']*");
+    private static final Pattern PERCENT_NUMBER = Pattern.compile("(-?\\d[\\d\\s\\u00a0.,]*)\\s*%");
+    private static final Pattern YEAR = Pattern.compile("(?<!\\d)(19|20)\\d{2}(?!\\d)");
+    private static final BigDecimal THOUSAND = BigDecimal.valueOf(1_000);
+    private static final BigDecimal MILLION = BigDecimal.valueOf(1_000_000);
+    private static final BigDecimal MAX_INTEREST_RATE = BigDecimal.valueOf(100);
+
+    private LoanFigureParser() {
+    }
+
+    /**
+     * Parses an amount of money, applying thousand/million units ("tkr", "MSEK", ...).
+     *
+     * @param raw The amount as extracted, e.g. "12 345 678 kr".
+     * @return The amount, or empty if no number could be found.
+     */
+    public static Optional<BigDecimal> parseAmount(String raw) {
+        if (raw == null) {
+            return Optional.empty();
+        }
+        String text = raw.toLowerCase(Locale.ROOT);
+        Matcher matcher = NUMBER.matcher(text);
+        if (!matcher.find()) {
+            return Optional.empty();
+        }
+        return parseNumber(matcher.group(), false).map(amount -> amount.multiply(unitMultiplier(text)));
+    }
+
+    /**
+     * Parses an interest rate in percent. For texts like "STIBOR + 0,5 % (2,35 %)" the last percentage is used.
+     *
+     * @param raw The rate as extracted, e.g. "2,35 %".
+     * @return The rate in percent, or empty if missing or implausible.
+     */
+    public static Optional<BigDecimal> parseInterestRate(String raw) {
+        if (raw == null) {
+            return Optional.empty();
+        }
+        String number = null;
+        Matcher percentMatcher = PERCENT_NUMBER.matcher(raw);
+        while (percentMatcher.find()) {
+            number = percentMatcher.group(1);
+        }
+        if (number == null) {
+            Matcher matcher = NUMBER.matcher(raw);
+            if (!matcher.find()) {
+                return Optional.empty();
+            }
+            number = matcher.group();
+        }
+        return parseNumber(number, true)
+                .filter(rate -> rate.signum() >= 0 && rate.compareTo(MAX_INTEREST_RATE) <= 0);
+    }
+
+    /**
+     * Parses the last calendar year of a financial year, e.g. 2022 for "2021-2022" or "2021-07-01 - 2022-06-30".
+     *
+     * @param raw The financial year as extracted.
+     * @return The year, or empty if none was found.
+     */
+    public static Optional<Integer> parseFinancialYear(String raw) {
+        if (raw == null) {
+            return Optional.empty();
+        }
+        Integer year = null;
+        Matcher matcher = YEAR.matcher(raw);
+        while (matcher.find()) {
+            year = Integer.parseInt(matcher.group());
+        }
+        return Optional.ofNullable(year);
+    }
+
+    /**
+     * Normalizes separators: with both ',' and '.' present the last one is the decimal separator, a single
+     * separator followed by exactly three digits is taken as a thousands separator unless `preferDecimal` is set.
+     */
+    private static Optional<BigDecimal> parseNumber(String token, boolean preferDecimal) {
+        String digits = token.replaceAll("[\\s\\u00a0']", "");
+        while (!digits.isEmpty() && !Character.isDigit(digits.charAt(digits.length() - 1))) {
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        int lastComma = digits.lastIndexOf(',');
+        int lastDot = digits.lastIndexOf('.');
+        if (lastComma >= 0 && lastDot >= 0) {
+            char decimal = lastComma > lastDot ? ',' : '.';
+            char grouping = decimal == ',' ? '.' : ',';
+            digits = digits.replace(String.valueOf(grouping), "").replace(decimal, '.');
+        } else if (lastComma >= 0 || lastDot >= 0) {
+            char separator = lastComma >= 0 ? ',' : '.';
+            int last = Math.max(lastComma, lastDot);
+            boolean single = digits.indexOf(separator) == last;
+            boolean decimal = single && (preferDecimal || digits.length() - last - 1 != 3);
+            digits = decimal ? digits.replace(separator, '.') : digits.replace(String.valueOf(separator), "");
+        }
+        try {
+            return Optional.of(new BigDecimal(digits));
+        } catch (NumberFormatException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static BigDecimal unitMultiplier(String text) {
+        if (text.matches(".*\\b(msek|mkr|mnkr|miljoner|million|millions)\\b.*")) {
+            return MILLION;
+        }
+        if (text.matches(".*\\b(tkr|tsek|ksek|tusen|thousand|thousands)\\b.*")) {
+            return THOUSAND;
+        }
+        return BigDecimal.ONE;
+    }
+}
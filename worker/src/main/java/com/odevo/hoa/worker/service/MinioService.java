@@ -1,18 +1,30 @@
 package com.odevo.hoa.worker.service;
 
+import io.minio.BucketExistsArgs;
+import io.minio.CopyObjectArgs;
+import io.minio.CopySource;
 import io.minio.GetObjectArgs;
+import io.minio.ListObjectsArgs;
+import io.minio.MakeBucketArgs;
 import io.minio.MinioClient;
 import io.minio.RemoveObjectArgs;
+import io.minio.Result;
+import io.minio.StatObjectArgs;
+import io.minio.UploadObjectArgs;
+import io.minio.errors.ErrorResponseException;
 import io.minio.errors.MinioException;
+import io.minio.messages.Item;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 
 /**
  * Service for interacting with MinIO (local S3 equivalent) from the worker.
- * Handles downloading and deleting files from the configured bucket.
+ * Handles downloading and deleting files from the configured bucket, uploading archives, and listing and copying
+ * the objects of a bulk ingest.
  */
 @Service
 @RequiredArgsConstructor
@@ -48,6 +60,34 @@ public class MinioService {
         }
     }
 
+    /**
+     * Uploads a local file to a specified MinIO bucket.
+     * If the bucket does not exist, it will be created.
+     *
+     * @param bucketName  The name of the bucket.
+     * @param objectName  The name of the object (file) in the bucket.
+     * @param file        The path of the local file to upload.
+     * @param contentType The content type of the file.
+     * @throws Exception if an error occurs during upload.
+     */
+    public void uploadFile(String bucketName, String objectName, Path file, String contentType) throws Exception {
+        boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
+        if (!found) {
+            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+            log.info("MinIO bucket '{}' created.", bucketName);
+        }
+
+        minioClient.uploadObject(
+                UploadObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .filename(file.toString())
+                        .contentType(contentType)
+                        .build()
+        );
+        log.info("File '{}' uploaded successfully to bucket '{}'.", objectName, bucketName);
+    }
+
     /**
      * Removes a file from a specified MinIO bucket.
      *
@@ -72,4 +112,84 @@ public class MinioService {
             throw new RuntimeException("File removal failed: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * Lists the objects under a prefix in lexicographic order of their names, recursively.
+     * The listing is paged lazily while iterating.
+     *
+     * @param bucketName The name of the bucket.
+     * @param prefix     The prefix of the object names, empty for the whole bucket.
+     * @param startAfter Only objects named after this one are listed, null to list from the start.
+     * @return The objects, each result throws on get() if its page could not be fetched.
+     */
+    public Iterable<Result<Item>> listObjects(String bucketName, String prefix, String startAfter) {
+        return minioClient.listObjects(
+                ListObjectsArgs.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .startAfter(startAfter)
+                        .recursive(true)
+                        .build()
+        );
+    }
+
+    /**
+     * Checks whether an object exists, without transferring its content.
+     *
+     * @param bucketName The name of the bucket.
+     * @param objectName The name of the object (file).
+     * @return true if the object exists.
+     * @throws Exception if an error other than a missing object/bucket occurs.
+     */
+    public boolean objectExists(String bucketName, String objectName) throws Exception {
+        try {
+            minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(objectName).build());
+            return true;
+        } catch (ErrorResponseException e) {
+            String code = e.errorResponse().code();
+            if ("NoSuchKey".equals(code) || "NoSuchBucket".equals(code) || "NoSuchObject".equals(code)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Looks up the size of an object, without transferring its content.
+     *
+     * @param bucketName The name of the bucket.
+     * @param objectName The name of the object (file).
+     * @return The size in bytes.
+     * @throws Exception if the object does not exist or the lookup fails.
+     */
+    public long objectSize(String bucketName, String objectName) throws Exception {
+        return minioClient.statObject(StatObjectArgs.builder().bucket(bucketName).object(objectName).build()).size();
+    }
+
+    /**
+     * Copies an object within MinIO (server side, the content does not pass through the worker).
+     * If the target bucket does not exist, it will be created.
+     *
+     * @param sourceBucketName The bucket of the object to copy.
+     * @param sourceObjectName The name of the object to copy.
+     * @param bucketName       The target bucket.
+     * @param objectName       The name of the copy.
+     * @throws Exception if an error occurs during the copy.
+     */
+    public void copyFile(String sourceBucketName, String sourceObjectName, String bucketName, String objectName) throws Exception {
+        boolean found = minioClient.bucketExists(BucketExistsArgs.builder().bucket(bucketName).build());
+        if (!found) {
+            minioClient.makeBucket(MakeBucketArgs.builder().bucket(bucketName).build());
+            log.info("MinIO bucket '{}' created.", bucketName);
+        }
+
+        minioClient.copyObject(
+                CopyObjectArgs.builder()
+                        .bucket(bucketName)
+                        .object(objectName)
+                        .source(CopySource.builder().bucket(sourceBucketName).object(sourceObjectName).build())
+                        .build()
+        );
+        log.info("File '{}/{}' copied to '{}/{}'.", sourceBucketName, sourceObjectName, bucketName, objectName);
+    }
 }
@@ -0,0 +1,107 @@
+package com.odevo.hoa.worker.service;
+
+import com.odevo.hoa.worker.limiter.MemoryBudget;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The content of a PDF being processed, loaded by the PdfContentService. Small PDFs are held on the heap, large ones
+ * in a memory-mapped temporary file, which the OS pages in as it is read, outside of the heap.
+ * Holds the PDF's reservation of the MemoryBudget: closing gives it back and deletes the file.
+ */
+@Slf4j
+public class PdfContent implements AutoCloseable {
+
+    private final ByteBuffer content;
+    private final Path file; // null when on the heap
+    private final MemoryBudget.Reservation reservation;
+
+    private PdfContent(ByteBuffer content, Path file, MemoryBudget.Reservation reservation) {
+        this.content = content.asReadOnlyBuffer();
+        this.file = file;
+        this.reservation = reservation;
+    }
+
+    static PdfContent inMemory(byte[] content, MemoryBudget.Reservation reservation) {
+        return new PdfContent(ByteBuffer.wrap(content), null, reservation);
+    }
+
+    /**
+     * Maps a downloaded file, which is deleted when the content is closed.
+     */
+    static PdfContent spilled(Path file, MemoryBudget.Reservation reservation) throws IOException {
+        try (FileChannel channel = FileChannel.open(file)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("PDF " + file + " is too large to map: " + channel.size() + " bytes");
+            }
+            // The mapping stays valid after the channel is closed
+            return new PdfContent(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), file, reservation);
+        }
+    }
+
+    public int size() {
+        return content.limit();
+    }
+
+    /**
+     * @return Whether the content is in a memory-mapped file rather than on the heap.
+     */
+    public boolean isSpilled() {
+        return file != null;
+    }
+
+    /**
+     * @return The directory of the memory-mapped file, null when the content is on the heap.
+     */
+    public Path getSpillDirectory() {
+        return file == null ? null : file.getParent();
+    }
+
+    /**
+     * @return A read-only view of the whole content, independent of other views.
+     */
+    public ByteBuffer buffer() {
+        return content.duplicate();
+    }
+
+    /**
+     * @return A stream over the whole content, independent of other streams.
+     */
+    public InputStream inputStream() {
+        ByteBuffer view = buffer();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] bytes, int offset, int length) {
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int count = Math.min(length, view.remaining());
+                view.get(bytes, offset, count);
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        reservation.close();
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("Could not delete the spilled PDF {}: {}", file, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.odevo.hoa.worker.service;
+
+import com.odevo.hoa.worker.limiter.MemoryBudget;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Downloads PDFs from MinIO within the MemoryBudget.
+ * A PDF processed in memory takes up about `memory.budget.footprint-factor` times its size on the heap until its
+ * extraction is done (the PDF itself and the Gemini request with the base64 PDF), which it reserves before the
+ * download starts. A PDF whose footprint would exceed `memory.budget.spill-share` of the budget is spilled instead:
+ * it is downloaded to a temporary file in `memory.spill-dir` and memory-mapped, and GeminiService builds its request
+ * in a file as well, so it only reserves the few buffers it streams through.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PdfContentService {
+
+    // Heap used by a spilled PDF: the download, base64 and gzip buffers
+    private static final long SPILLED_FOOTPRINT_BYTES = 1024 * 1024;
+
+    private final MinioService minioService;
+    private final MemoryBudget memoryBudget;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${memory.budget.footprint-factor:3}")
+    private double footprintFactor;
+
+    @Value("${memory.budget.spill-share:0.25}")
+    private double spillShare;
+
+    @Value("${memory.spill-dir:${java.io.tmpdir}}")
+    private Path spillDirectory;
+
+    private Counter spilledCounter;
+
+    @PostConstruct
+    void init() throws Exception {
+        Files.createDirectories(spillDirectory);
+        spilledCounter = Counter.builder("hoa.worker.memory.spilled")
+                .description("PDFs too large for the memory budget, processed from a memory-mapped file")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Downloads a PDF once its memory can be reserved, looking up its size first.
+     *
+     * @see #load(String, String, long)
+     */
+    public PdfContent load(String bucketName, String objectName) throws Exception {
+        return load(bucketName, objectName, minioService.objectSize(bucketName, objectName));
+    }
+
+    /**
+     * Downloads a PDF once its memory can be reserved, blocking until then.
+     *
+     * @param bucketName The name of the bucket.
+     * @param objectName The name of the object (file) to download.
+     * @param size       The size of the object, which decides between memory and a spill file.
+     * @return The content, to be closed once the PDF is extracted.
+     * @throws Exception if the download fails, nothing stays reserved then.
+     */
+    public PdfContent load(String bucketName, String objectName, long size) throws Exception {
+        long footprint = (long) Math.ceil(size * footprintFactor);
+        boolean spill = footprint > memoryBudget.getCapacity() * spillShare;
+        MemoryBudget.Reservation reservation = memoryBudget.reserve(spill ? SPILLED_FOOTPRINT_BYTES : footprint);
+        Path file = null;
+        try (InputStream pdfInputStream = minioService.downloadFile(bucketName, objectName)) {
+            if (!spill) {
+                return PdfContent.inMemory(pdfInputStream.readAllBytes(), reservation);
+            }
+            log.info("Spilling PDF {} ({} MB) to a memory-mapped file.", objectName, size / (1024 * 1024));
+            spilledCounter.increment();
+            file = Files.createTempFile(spillDirectory, "pdf-", ".pdf");
+            Files.copy(pdfInputStream, file, StandardCopyOption.REPLACE_EXISTING);
+            return PdfContent.spilled(file, reservation);
+        } catch (Exception e) {
+            reservation.close();
+            if (file != null) {
+                Files.deleteIfExists(file);
+            }
+            throw e;
+        }
+    }
+}
@@ -1,87 +1,112 @@
 package com.odevo.hoa.worker.service;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.odevo.hoa.common.dto.PdfProcessRequest;
-import com.odevo.hoa.common.entity.ExtractedData;
+import com.odevo.hoa.common.util.Constants;
 import com.odevo.hoa.worker.repository.ExtractedDataRepository;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.io.InputStream;
-import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
 
 /**
  * Service responsible for the end-to-end PDF processing workflow.
  * This includes downloading from MinIO, extracting text, calling Gemini,
  * and saving the extracted data to PostgreSQL.
+ * Every step is an observation (a span of the trace started by the upload, see `management.tracing`),
+ * with the payload sizes as attributes.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PdfProcessingService {
 
-    private final MinioService minioService;
+    private final PdfContentService pdfContentService;
     private final GeminiService geminiService;
+    private final ExtractionPersistenceService extractionPersistenceService;
+    private final ProcessingLeaseService processingLeaseService;
     private final ExtractedDataRepository extractedDataRepository;
-    private final ObjectMapper objectMapper; // For converting Map to JSON string
+    private final ObservationRegistry observationRegistry;
 
     /**
      * Processes a PDF file based on the received request.
      * Workflow:
-     * 1. Download PDF from MinIO.
-     * 2. Call Gemini API with the pdf to get structured data and vector.
-     * 3. Store the extracted JSON and vector data in PostgreSQL.
+     * 0. Take the processing lease of the PDF, so no other attempt processes it at the same time. Without the lease
+     * the request is deferred, and a request for a PDF already extracted with the current version is a duplicate.
+     * 1. Download PDF from MinIO, once its memory can be reserved (see PdfContentService).
+     * 2. Call Gemini API with the pdf to get structured data and vector, then give the memory back.
+     * 3. Store the extracted JSON and vector data in PostgreSQL, replacing any earlier extraction of the same file.
+     * No transaction spans the whole workflow, only step 3 is transactional (see ExtractionPersistenceService).
      *
      * @param request The PdfProcessRequest containing PDF details.
+     * @return What was done with the request.
      */
-    @Transactional
-    public void processPdf(PdfProcessRequest request) throws Exception {
+    public ProcessingOutcome processPdf(PdfProcessRequest request) throws Exception {
         String pdfFileName = request.getPdfFileName();
         String originalFileName = request.getOriginalFileName();
         String bucketName = request.getBucketName();
 
-        log.info("Starting processing for PDF: {} from bucket: {}", pdfFileName, bucketName);
+        Optional<UUID> leaseToken = processingLeaseService.tryAcquire(pdfFileName);
+        if (leaseToken.isEmpty()) {
+            log.info("PDF {} is being processed by another attempt, deferring.", pdfFileName);
+            return ProcessingOutcome.DEFERRED;
+        }
 
-        InputStream pdfInputStream = null;
         try {
-            // 1. Download PDF from MinIO
-            pdfInputStream = minioService.downloadFile(bucketName, pdfFileName);
-            log.info("PDF file {} downloaded from MinIO.", pdfFileName);
+            // Checked while holding the lease, so a concurrent attempt cannot complete in between
+            if (extractedDataRepository.findExtractionVersion(pdfFileName).filter(Constants.EXTRACTION_VERSION::equals).isPresent()) {
+                log.info("PDF {} is already extracted with version {}, skipping duplicate request.", pdfFileName, Constants.EXTRACTION_VERSION);
+                return ProcessingOutcome.DUPLICATE;
+            }
+            log.info("Starting processing for PDF: {} from bucket: {}", pdfFileName, bucketName);
 
+            JsonNode extractedGeminiData;
+            // 1. Download PDF from MinIO
+            try (PdfContent pdf = download(bucketName, pdfFileName)) {
+                log.info("PDF file {} downloaded from MinIO.", pdfFileName);
 
-            // 2. Call Gemini API to extract structured data and vector
-            JsonNode extractedGeminiData = geminiService.extractDataFromPdfContent(pdfInputStream);
+                // 2. Call Gemini API to extract structured data and vector
+                extractedGeminiData = geminiService.extractDataFromPdfContent(pdf);
+            }
             String jsonData = extractedGeminiData.toString();
             String vectorData = "";
             log.info("Data extracted by Gemini for {}. JSON size: {}, Vector length: {}",
                     pdfFileName, jsonData.length(), vectorData.length());
 
 
-            // 3. Store the extracted JSON and vector data in PostgreSQL
-            ExtractedData extracted = ExtractedData.builder()
-                    .pdfFileName(pdfFileName)
-                    .originalFileName(originalFileName)
-                    .jsonData(jsonData)
-                    .vectorData(vectorData)
-                    .extractionTimestamp(LocalDateTime.now())
-                    .build();
-
-            extractedDataRepository.save(extracted);
-            log.info("Extracted data saved to database for PDF: {}", pdfFileName);
+            // 3. Store the extracted JSON and vector data in PostgreSQL (re-extractions update the existing row)
+            Observation.createNotStarted("hoa.db.persist", observationRegistry)
+                    .highCardinalityKeyValue("pdf.file.name", pdfFileName)
+                    .highCardinalityKeyValue("json.size.bytes", String.valueOf(jsonData.length()))
+                    .observe(() -> extractionPersistenceService.persist(pdfFileName, originalFileName, extractedGeminiData, vectorData, leaseToken.get()));
+            return ProcessingOutcome.PROCESSED;
+        } catch (StaleAttemptException e) {
+            log.warn("Discarding the result for PDF {}: {}", pdfFileName, e.getMessage());
+            return ProcessingOutcome.STALE;
         } catch (Exception e) {
             log.error("Failed to process PDF {}: {}", pdfFileName, e.getMessage(), e);
             throw e; // Re-throw to indicate failure, allowing potential dead-letter queue handling
         } finally {
-            if (pdfInputStream != null) {
-                try {
-                    pdfInputStream.close();
-                } catch (Exception e) {
-                    log.warn("Failed to close PDF input stream: {}", e.getMessage());
-                }
-            }
+            processingLeaseService.release(pdfFileName, leaseToken.get());
         }
     }
+
+    /**
+     * Downloads a PDF from MinIO into memory, or into a memory-mapped file if it is large.
+     * The observation includes the wait for the memory reservation.
+     */
+    private PdfContent download(String bucketName, String pdfFileName) throws Exception {
+        Observation observation = Observation.createNotStarted("hoa.minio.download", observationRegistry)
+                .highCardinalityKeyValue("pdf.file.name", pdfFileName);
+        return observation.observeChecked(() -> {
+            PdfContent pdf = pdfContentService.load(bucketName, pdfFileName);
+            observation.lowCardinalityKeyValue("pdf.spilled", String.valueOf(pdf.isSpilled()));
+            observation.highCardinalityKeyValue("pdf.size.bytes", String.valueOf(pdf.size()));
+            return pdf;
+        });
+    }
 }
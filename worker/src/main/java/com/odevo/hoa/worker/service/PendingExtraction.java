@@ -0,0 +1,20 @@
+package com.odevo.hoa.worker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.UUID;
+
+/**
+ * An extraction waiting to be stored, together with the processing lease of the attempt that made it.
+ */
+@Data
+@AllArgsConstructor
+public class PendingExtraction {
+    private String pdfFileName;
+    private String originalFileName;
+    private JsonNode jsonData;
+    private String vectorData;
+    private UUID leaseToken;
+}
@@ -0,0 +1,77 @@
+package com.odevo.hoa.worker.service;
+
+import com.odevo.hoa.worker.repository.ProcessingLeaseRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Service managing the processing leases held by this worker.
+ * An attempt takes the lease of a PDF before calling Gemini and keeps it alive with heartbeats every
+ * `lease.heartbeat-interval-ms`. If the worker dies, the lease expires after `lease.ttl-ms` and a redelivery
+ * of the message can take it over; a result of the old attempt is then discarded (see ExtractionPersistenceService).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ProcessingLeaseService {
+
+    private static final String OWNER = ManagementFactory.getRuntimeMXBean().getName();
+
+    private final ProcessingLeaseRepository processingLeaseRepository;
+
+    // Leases held by this worker, by PDF file name
+    private final Map<String, UUID> heldLeases = new ConcurrentHashMap<>();
+
+    @Value("${lease.ttl-ms:60000}")
+    private long ttlMillis;
+
+    /**
+     * Takes the lease of a PDF, unless another live attempt holds it.
+     *
+     * @param pdfFileName The stored file name of the PDF.
+     * @return The token of the lease, or empty if another attempt holds it.
+     */
+    public Optional<UUID> tryAcquire(String pdfFileName) {
+        UUID token = UUID.randomUUID();
+        if (processingLeaseRepository.tryAcquire(pdfFileName, token, OWNER, ttlMillis) == 0) {
+            return Optional.empty();
+        }
+        heldLeases.put(pdfFileName, token);
+        log.debug("Lease {} taken on {}.", token, pdfFileName);
+        return Optional.of(token);
+    }
+
+    /**
+     * Gives back a lease, if it is still held. Called once the attempt is over, whatever its outcome.
+     */
+    public void release(String pdfFileName, UUID token) {
+        heldLeases.remove(pdfFileName, token);
+        processingLeaseRepository.release(pdfFileName, token);
+    }
+
+    /**
+     * Renews all leases held by this worker. A lease that cannot be renewed was taken over by another attempt.
+     */
+    @Scheduled(fixedDelayString = "${lease.heartbeat-interval-ms:15000}")
+    public void heartbeat() {
+        heldLeases.forEach((pdfFileName, token) -> {
+            try {
+                if (processingLeaseRepository.renew(pdfFileName, token, ttlMillis) == 0) {
+                    heldLeases.remove(pdfFileName, token);
+                    log.warn("Lease {} on {} was lost, the result of this attempt will be discarded.", token, pdfFileName);
+                }
+            } catch (Exception e) {
+                log.error("Error renewing lease {} on {}: {}", token, pdfFileName, e.getMessage(), e);
+            }
+        });
+    }
+}
@@ -0,0 +1,15 @@
+package com.odevo.hoa.worker.service;
+
+/**
+ * Outcome of handling one processing request.
+ */
+public enum ProcessingOutcome {
+    // The PDF was extracted and stored
+    PROCESSED,
+    // The PDF was already extracted with the current version, nothing was done
+    DUPLICATE,
+    // Another attempt holds the lease on the PDF, the request has to be retried later
+    DEFERRED,
+    // The lease was lost while extracting, the result was discarded
+    STALE
+}
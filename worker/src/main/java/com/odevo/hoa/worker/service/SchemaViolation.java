@@ -0,0 +1,20 @@
+package com.odevo.hoa.worker.service;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * A place where an extraction does not match the ExtractionSchema.
+ */
+@Data
+@AllArgsConstructor
+public class SchemaViolation {
+    private String field; // the top-level field the violation is in, which a repair asks for again
+    private String path; // JSON pointer to the offending value, e.g. /loans/2/debt
+    private String message;
+
+    @Override
+    public String toString() {
+        return path + " " + message;
+    }
+}
@@ -0,0 +1,11 @@
+package com.odevo.hoa.worker.service;
+
+/**
+ * Raised when an extraction attempt tries to store its result after losing its processing lease,
+ * i.e. another attempt took over the PDF meanwhile.
+ */
+public class StaleAttemptException extends RuntimeException {
+    public StaleAttemptException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,4 @@
+-- V10__Job_Checkpoint_Position_Length.sql
+
+-- The bulk ingest checkpoints MinIO object names, which can be up to 1024 bytes long
+ALTER TABLE job_checkpoint ALTER COLUMN position TYPE VARCHAR(1024);
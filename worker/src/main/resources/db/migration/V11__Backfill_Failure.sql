@@ -0,0 +1,10 @@
+-- V11__Backfill_Failure.sql
+
+-- Failed re-extractions per file. Their rows stay stale, so the backfill would enqueue them on every pass;
+-- once attempts reaches backfill.max-attempts for the current extraction version, the row is skipped.
+CREATE TABLE backfill_failure (
+    pdf_file_name VARCHAR(255) PRIMARY KEY,
+    extraction_version VARCHAR(100) NOT NULL, -- the version the attempts were made with, a new version starts over
+    attempts INTEGER NOT NULL,
+    failed_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
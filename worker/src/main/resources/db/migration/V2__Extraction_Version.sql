@@ -0,0 +1,14 @@
+-- V2__Extraction_Version.sql
+
+-- Record which model/schema combination produced each extraction
+ALTER TABLE extracted_data ADD COLUMN extraction_version VARCHAR(100);
+
+-- Every row so far was produced by the original model and schema
+UPDATE extracted_data SET extraction_version = 'gemini-2.0-flash/schema-v1';
+
+-- Resumable positions for long running background jobs (e.g. the re-extraction backfill)
+CREATE TABLE job_checkpoint (
+    job_name VARCHAR(255) PRIMARY KEY,
+    position VARCHAR(255),
+    updated_at TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
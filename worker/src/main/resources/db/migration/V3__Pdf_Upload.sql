@@ -0,0 +1,13 @@
+-- V3__Pdf_Upload.sql
+
+-- One row per upload. PDFs are stored under their content hash, so several uploads
+-- of the same file share one MinIO object and one extracted_data row (by pdf_file_name).
+CREATE TABLE pdf_upload (
+    id UUID PRIMARY KEY,
+    pdf_file_name VARCHAR(255) NOT NULL, -- <sha-256>.pdf, matches extracted_data.pdf_file_name
+    original_file_name VARCHAR(255),
+    deduplicated BOOLEAN NOT NULL DEFAULT FALSE, -- true if linked to an existing extraction without processing
+    upload_timestamp TIMESTAMP WITH TIME ZONE DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_pdf_upload_pdf_file_name ON pdf_upload (pdf_file_name);
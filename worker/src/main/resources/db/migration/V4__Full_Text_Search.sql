@@ -0,0 +1,10 @@
+-- V4__Full_Text_Search.sql
+
+-- Search document over title (weight A), keywords (B) and summary (C), kept up to date by PostgreSQL itself
+ALTER TABLE extracted_data ADD COLUMN search_vector TSVECTOR GENERATED ALWAYS AS (
+    setweight(to_tsvector('english', coalesce(json_data ->> 'title', '')), 'A') ||
+    setweight(jsonb_to_tsvector('english', coalesce(json_data -> 'keywords', '[]'::jsonb), '["string"]'), 'B') ||
+    setweight(to_tsvector('english', coalesce(json_data ->> 'summary', '')), 'C')
+) STORED;
+
+CREATE INDEX idx_extracted_data_search_vector ON extracted_data USING GIN (search_vector);
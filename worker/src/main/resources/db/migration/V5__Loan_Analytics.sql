@@ -0,0 +1,27 @@
+-- V5__Loan_Analytics.sql
+
+-- Loans of every extraction, normalized from the strings in json_data.loans into typed numbers
+CREATE TABLE loan_fact (
+    id BIGSERIAL PRIMARY KEY,
+    extracted_data_id UUID NOT NULL REFERENCES extracted_data (id) ON DELETE CASCADE,
+    association VARCHAR(255) NOT NULL,
+    financial_year INTEGER NOT NULL, -- last calendar year of the financial year, e.g. 2022 for "2021-2022"
+    debt NUMERIC(20, 2) NOT NULL,
+    interest_rate NUMERIC(9, 4) -- in percent, NULL when the report does not state it
+);
+
+CREATE INDEX idx_loan_fact_extracted_data_id ON loan_fact (extracted_data_id);
+
+-- Per association and year aggregates, maintained incrementally by the worker with every (re-)extraction.
+-- The weighted interest rate is rate_weighted_debt / rated_debt.
+CREATE TABLE loan_summary (
+    association VARCHAR(255) NOT NULL,
+    financial_year INTEGER NOT NULL,
+    loan_count BIGINT NOT NULL,
+    total_debt NUMERIC(24, 2) NOT NULL,
+    rated_debt NUMERIC(24, 2) NOT NULL, -- debt of the loans with a known interest rate
+    rate_weighted_debt NUMERIC(30, 6) NOT NULL, -- sum of debt * interest_rate
+    PRIMARY KEY (association, financial_year)
+);
+
+CREATE INDEX idx_loan_summary_financial_year ON loan_summary (financial_year);
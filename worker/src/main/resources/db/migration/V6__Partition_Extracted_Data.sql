@@ -0,0 +1,100 @@
+-- V6__Partition_Extracted_Data.sql
+
+-- extracted_data becomes range partitioned by month on extraction_timestamp. A partitioned table cannot have a
+-- unique index without the partition key, so uniqueness of pdf_file_name (and the partition holding each file)
+-- is kept in extracted_data_lookup, maintained by a trigger.
+
+ALTER TABLE extracted_data RENAME TO extracted_data_unpartitioned;
+ALTER TABLE loan_fact DROP CONSTRAINT loan_fact_extracted_data_id_fkey;
+
+CREATE TABLE extracted_data (
+    id UUID NOT NULL,
+    pdf_file_name VARCHAR(255) NOT NULL,
+    original_file_name VARCHAR(255),
+    json_data JSONB,
+    vector_data TEXT,
+    extraction_timestamp TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    extraction_version VARCHAR(100),
+    search_vector TSVECTOR GENERATED ALWAYS AS (
+        setweight(to_tsvector('english', coalesce(json_data ->> 'title', '')), 'A') ||
+        setweight(jsonb_to_tsvector('english', coalesce(json_data -> 'keywords', '[]'::jsonb), '["string"]'), 'B') ||
+        setweight(to_tsvector('english', coalesce(json_data ->> 'summary', '')), 'C')
+    ) STORED,
+    PRIMARY KEY (id, extraction_timestamp)
+) PARTITION BY RANGE (extraction_timestamp);
+
+-- One row per file name; archived_partition is set once the row's partition has been archived to MinIO
+CREATE TABLE extracted_data_lookup (
+    pdf_file_name VARCHAR(255) PRIMARY KEY,
+    id UUID NOT NULL UNIQUE,
+    extraction_timestamp TIMESTAMP WITH TIME ZONE NOT NULL,
+    archived_partition VARCHAR(63)
+);
+
+-- Creates the missing monthly partitions (named extracted_data_pYYYY_MM, in UTC) between two months, inclusive
+CREATE FUNCTION create_extracted_data_partitions(from_month DATE, to_month DATE) RETURNS INTEGER AS $$
+DECLARE
+    partition_month DATE := date_trunc('month', from_month);
+    partition_name TEXT;
+    created INTEGER := 0;
+BEGIN
+    WHILE partition_month <= to_month LOOP
+        partition_name := 'extracted_data_p' || to_char(partition_month, 'YYYY_MM');
+        IF to_regclass(partition_name) IS NULL THEN
+            EXECUTE format('CREATE TABLE %I PARTITION OF extracted_data FOR VALUES FROM (%L) TO (%L)',
+                           partition_name,
+                           partition_month::timestamp AT TIME ZONE 'UTC',
+                           (partition_month + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC');
+            created := created + 1;
+        END IF;
+        partition_month := partition_month + INTERVAL '1 month';
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Keeps extracted_data_lookup in sync. An UPDATE moving a row to another partition fires DELETE then INSERT.
+-- Re-inserting an archived file name takes over its lookup row, any other duplicate is a unique violation.
+CREATE FUNCTION sync_extracted_data_lookup() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        INSERT INTO extracted_data_lookup (pdf_file_name, id, extraction_timestamp)
+        VALUES (NEW.pdf_file_name, NEW.id, NEW.extraction_timestamp)
+        ON CONFLICT (pdf_file_name) DO UPDATE
+            SET id = EXCLUDED.id, extraction_timestamp = EXCLUDED.extraction_timestamp, archived_partition = NULL
+            WHERE extracted_data_lookup.archived_partition IS NOT NULL;
+        IF NOT FOUND THEN
+            RAISE EXCEPTION 'duplicate pdf_file_name %', NEW.pdf_file_name USING ERRCODE = 'unique_violation';
+        END IF;
+    ELSIF TG_OP = 'UPDATE' THEN
+        UPDATE extracted_data_lookup
+        SET pdf_file_name = NEW.pdf_file_name, id = NEW.id, extraction_timestamp = NEW.extraction_timestamp
+        WHERE id = OLD.id;
+    ELSE
+        DELETE FROM extracted_data_lookup WHERE id = OLD.id;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitions for all existing rows, the current month and three months ahead (the worker keeps extending this)
+SELECT create_extracted_data_partitions(
+    LEAST(COALESCE((SELECT min(extraction_timestamp AT TIME ZONE 'UTC') FROM extracted_data_unpartitioned), now() AT TIME ZONE 'UTC'),
+          now() AT TIME ZONE 'UTC')::date,
+    (now() AT TIME ZONE 'UTC' + INTERVAL '3 months')::date);
+
+INSERT INTO extracted_data (id, pdf_file_name, original_file_name, json_data, vector_data, extraction_timestamp, extraction_version)
+SELECT id, pdf_file_name, original_file_name, json_data, vector_data, COALESCE(extraction_timestamp, now()), extraction_version
+FROM extracted_data_unpartitioned;
+
+INSERT INTO extracted_data_lookup (pdf_file_name, id, extraction_timestamp)
+SELECT pdf_file_name, id, extraction_timestamp FROM extracted_data;
+
+DROP TABLE extracted_data_unpartitioned;
+
+CREATE TRIGGER trg_extracted_data_lookup
+    AFTER INSERT OR UPDATE OR DELETE ON extracted_data
+    FOR EACH ROW EXECUTE FUNCTION sync_extracted_data_lookup();
+
+CREATE INDEX idx_extracted_data_pdf_file_name ON extracted_data (pdf_file_name);
+CREATE INDEX idx_extracted_data_search_vector ON extracted_data USING GIN (search_vector);
@@ -0,0 +1,4 @@
+-- V7__Pdf_Upload_Association.sql
+
+-- Association (tenant) named by the uploader, the worker schedules extractions fairly across associations
+ALTER TABLE pdf_upload ADD COLUMN association_id VARCHAR(255);
@@ -0,0 +1,12 @@
+-- V8__Processing_Lease.sql
+
+-- At most one extraction attempt per file at a time. The attempt holding the lease renews expires_at with
+-- heartbeats; once it stops (e.g. the worker died), another attempt can take the lease over.
+CREATE TABLE processing_lease (
+    pdf_file_name VARCHAR(255) PRIMARY KEY,
+    token UUID NOT NULL, -- identifies the attempt, a result is only stored while its token holds the lease
+    owner VARCHAR(255) NOT NULL, -- worker instance, for diagnostics
+    acquired_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    heartbeat_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    expires_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
@@ -0,0 +1,6 @@
+-- V9__Pdf_Upload_Completion.sql
+
+-- Direct uploads to MinIO are recorded when the upload URL is handed out and completed by the client's callback.
+-- NULL = the file has not been confirmed as uploaded yet
+ALTER TABLE pdf_upload ADD COLUMN completed_timestamp TIMESTAMP WITH TIME ZONE;
+UPDATE pdf_upload SET completed_timestamp = upload_timestamp;
@@ -0,0 +1,138 @@
+package com.odevo.hoa.worker.limiter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MemoryBudgetTest {
+
+    private static final long CAPACITY = 100;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private MemoryBudget budget;
+
+    @BeforeEach
+    void setUp() {
+        budget = new MemoryBudget(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(budget, "heapFraction", 0.5);
+        ReflectionTestUtils.invokeMethod(budget, "init");
+        // A small budget instead of half the test JVM's heap
+        ReflectionTestUtils.setField(budget, "capacity", CAPACITY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void reservesAndReleases() throws Exception {
+        MemoryBudget.Reservation first = budget.reserve(30);
+        MemoryBudget.Reservation second = budget.reserve(70);
+        assertThat(budget.getReserved()).isEqualTo(100);
+
+        first.close();
+        second.close();
+        assertThat(budget.getReserved()).isZero();
+    }
+
+    @Test
+    void reservationLargerThanTheBudgetIsClampedToIt() throws Exception {
+        MemoryBudget.Reservation small = budget.reserve(10);
+        Future<MemoryBudget.Reservation> large = executor.submit(() -> budget.reserve(1000));
+        awaitUntil(() -> budget.getWaiting() == 1);
+        assertThat(large.isDone()).isFalse();
+
+        // Granted once nothing else is reserved, for the whole budget
+        small.close();
+        MemoryBudget.Reservation reservation = large.get(5, TimeUnit.SECONDS);
+        assertThat(reservation.getBytes()).isEqualTo(CAPACITY);
+        assertThat(budget.getReserved()).isEqualTo(CAPACITY);
+    }
+
+    @Test
+    void largeReservationIsNotStarvedBySmallOnes() throws Exception {
+        MemoryBudget.Reservation held = budget.reserve(60);
+        Future<MemoryBudget.Reservation> large = executor.submit(() -> budget.reserve(80));
+        awaitUntil(() -> budget.getWaiting() == 1);
+        // Would fit next to the held one, but arrived after the large one
+        Future<MemoryBudget.Reservation> small = executor.submit(() -> budget.reserve(10));
+        awaitUntil(() -> budget.getWaiting() == 2);
+        assertThat(small.isDone()).isFalse();
+
+        held.close();
+        large.get(5, TimeUnit.SECONDS);
+        small.get(5, TimeUnit.SECONDS);
+        assertThat(budget.getReserved()).isEqualTo(90);
+        assertThat(budget.getWaiting()).isZero();
+    }
+
+    @Test
+    void interruptedReservationLeavesTheQueueAndWakesTheNext() throws Exception {
+        MemoryBudget.Reservation held = budget.reserve(90);
+        Future<MemoryBudget.Reservation> large = executor.submit(() -> budget.reserve(50));
+        awaitUntil(() -> budget.getWaiting() == 1);
+        Future<MemoryBudget.Reservation> small = executor.submit(() -> budget.reserve(5));
+        awaitUntil(() -> budget.getWaiting() == 2);
+
+        large.cancel(true);
+        MemoryBudget.Reservation next = small.get(5, TimeUnit.SECONDS);
+        assertThat(next.getBytes()).isEqualTo(5);
+        assertThat(budget.getWaiting()).isZero();
+        assertThat(budget.getReserved()).isEqualTo(95); // nothing reserved for the interrupted one
+
+        held.close();
+        next.close();
+        assertThat(budget.getReserved()).isZero();
+    }
+
+    @Test
+    void interruptedReservationThrows() throws Exception {
+        MemoryBudget.Reservation held = budget.reserve(CAPACITY);
+        Future<?> waiting = executor.submit(() -> {
+            Thread.currentThread().interrupt();
+            return budget.reserve(1);
+        });
+
+        assertThatThrownBy(() -> waiting.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class).hasCauseInstanceOf(InterruptedException.class);
+        assertThat(budget.getWaiting()).isZero();
+        held.close();
+    }
+
+    @Test
+    void closingTwiceReleasesOnce() throws Exception {
+        MemoryBudget.Reservation held = budget.reserve(40);
+        MemoryBudget.Reservation other = budget.reserve(30);
+
+        held.close();
+        held.close();
+        assertThat(budget.getReserved()).isEqualTo(30);
+
+        other.close();
+        assertThat(budget.getReserved()).isZero();
+    }
+
+    private static void awaitUntil(BooleanSupplier condition) throws InterruptedException, TimeoutException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new TimeoutException("Condition not met within 5 seconds");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
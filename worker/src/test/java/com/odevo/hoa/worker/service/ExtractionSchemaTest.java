@@ -0,0 +1,131 @@
+package com.odevo.hoa.worker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExtractionSchemaTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ExtractionSchema schema;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        schema = new ExtractionSchema(objectMapper);
+    }
+
+    @Test
+    void validExtractionHasNoViolations() throws Exception {
+        assertThat(schema.validate(validExtraction())).isEmpty();
+    }
+
+    @Test
+    void reportsMissingRequiredFields() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.remove("summary");
+        ((ObjectNode) extraction.get("board_members").get(0)).remove("name");
+
+        assertThat(schema.validate(extraction)).extracting(SchemaViolation::toString)
+                .containsExactlyInAnyOrder("/summary is required", "/board_members/0/name is required");
+    }
+
+    @Test
+    void missingOptionalFieldIsValid() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.remove("auditor");
+        ((ObjectNode) extraction.get("loans").get(0)).remove("interrest_rate");
+
+        assertThat(schema.validate(extraction)).isEmpty();
+    }
+
+    @Test
+    void nullIsOnlyAllowedWhereNullable() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.putNull("association");
+        extraction.putNull("title");
+        ((ObjectNode) extraction.get("board_members").get(0)).putNull("role");
+
+        assertThat(schema.validate(extraction)).extracting(SchemaViolation::toString)
+                .containsExactly("/title must not be null");
+    }
+
+    @Test
+    void reportsWrongTypes() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.put("summary", 42);
+        extraction.put("keywords", "roof, windows");
+        extraction.putArray("board_members").add("Anna Berg");
+
+        assertThat(schema.validate(extraction)).extracting(SchemaViolation::toString)
+                .containsExactlyInAnyOrder("/summary must be a string", "/keywords must be an array",
+                        "/board_members/0 must be an object");
+        assertThat(schema.validate(objectMapper.readTree("[]"))).extracting(SchemaViolation::toString)
+                .containsExactly(" must be an object");
+    }
+
+    @Test
+    void checksEveryArrayItem() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.putArray("keywords").add("roof").add(7).add("windows").addNull();
+
+        assertThat(schema.validate(extraction)).extracting(SchemaViolation::getPath)
+                .containsExactly("/keywords/1", "/keywords/3");
+    }
+
+    @Test
+    void mapsNestedViolationsToTheirTopLevelField() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.withArray("loans").addObject().put("interrest_rate", "2.1%");
+        extraction.withArray("loans").addObject().put("debt", 100000);
+
+        List<SchemaViolation> violations = schema.validate(extraction);
+
+        assertThat(violations).extracting(SchemaViolation::getPath).containsExactly("/loans/1/debt", "/loans/2/debt");
+        assertThat(violations).extracting(SchemaViolation::getField).containsOnly("loans");
+        assertThat(schema.validate(objectMapper.readTree("\"text\""))).extracting(SchemaViolation::getField).containsExactly("");
+    }
+
+    @Test
+    void validatesOneField() throws Exception {
+        assertThat(schema.validateField("loans", objectMapper.readTree("[{\"debt\": \"1 000 000 kr\"}]"))).isEmpty();
+        assertThat(schema.validateField("loans", objectMapper.readTree("[{\"debt\": 5}]")))
+                .extracting(SchemaViolation::toString).containsExactly("/loans/0/debt must be a string");
+        assertThat(schema.validateField("summary", null)).extracting(SchemaViolation::toString)
+                .containsExactly("/summary is required");
+        assertThat(schema.validateField("auditor", null)).isEmpty();
+    }
+
+    @Test
+    void subSchemaKeepsOnlyTheGivenFields() throws Exception {
+        JsonNode subSchema = objectMapper.readTree(schema.subSchema(List.of("auditor", "loans")));
+
+        assertThat(subSchema.path("properties").properties()).extracting(Map.Entry::getKey)
+                .containsExactly("auditor", "loans");
+        assertThat(subSchema.path("required")).extracting(JsonNode::asText).containsExactly("loans");
+        assertThat(subSchema.at("/properties/loans/items/required")).extracting(JsonNode::asText).containsExactly("debt");
+        // The schema itself is left as it is
+        assertThat(schema.getFields()).hasSize(8);
+    }
+
+    private ObjectNode validExtraction() throws Exception {
+        return (ObjectNode) objectMapper.readTree("""
+                {
+                  "title": "Annual report 2022",
+                  "association": "BRF Eken",
+                  "auditor": "Karin Lund",
+                  "summary": "A year of renovations.",
+                  "keywords": ["roof", "windows"],
+                  "board_members": [{"name": "Anna Berg", "role": "Chair"}],
+                  "financial_year": "2021-2022",
+                  "loans": [{"debt": "1 000 000 kr", "interrest_rate": "1.5%"}]
+                }
+                """);
+    }
+}
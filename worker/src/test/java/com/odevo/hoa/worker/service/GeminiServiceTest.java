@@ -0,0 +1,134 @@
+package com.odevo.hoa.worker.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.odevo.hoa.worker.limiter.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class GeminiServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    // Answers of the stubbed Gemini endpoint, one per call
+    private final Deque<ClientResponse> responses = new ArrayDeque<>();
+    private GeminiService geminiService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        WebClient webClient = WebClient.builder().exchangeFunction(request -> Mono.just(responses.removeFirst())).build();
+        geminiService = new GeminiService(webClient, objectMapper, mock(AdaptiveConcurrencyLimiter.class),
+                ObservationRegistry.NOOP, meterRegistry, new ExtractionSchema(objectMapper));
+        ReflectionTestUtils.setField(geminiService, "geminiApiKey", "test");
+        ReflectionTestUtils.setField(geminiService, "geminiApiBaseUrl", "http://gemini.test");
+        ReflectionTestUtils.setField(geminiService, "repairMaxAttempts", 1);
+    }
+
+    @Test
+    void repairReplacesOnlyTheFieldsThatComeBackValid() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.remove("summary");
+        extraction.putArray("loans").addObject().put("debt", 5);
+        respond(extraction);
+        // The summary is fixed, the loans are still wrong and the title was not asked for
+        respond(objectMapper.readTree("""
+                {"summary": "A year of renovations.", "loans": [{"debt": null}], "title": "Something else"}
+                """));
+
+        JsonNode result = geminiService.extractDataFromPdfContent(pdf());
+
+        assertThat(responses).isEmpty();
+        assertThat(result.get("summary").asText()).isEqualTo("A year of renovations.");
+        assertThat(result.get("loans")).isEqualTo(objectMapper.readTree("[{\"debt\": 5}]"));
+        assertThat(result.get("title").asText()).isEqualTo("Annual report 2022");
+        assertThat(meterRegistry.counter("hoa.gemini.extraction.result", "result", "invalid").count()).isEqualTo(1);
+    }
+
+    @Test
+    void repairOfEveryFieldMakesTheExtractionValid() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.put("financial_year", 2022);
+        respond(extraction);
+        respond(objectMapper.readTree("{\"financial_year\": \"2021-2022\"}"));
+
+        JsonNode result = geminiService.extractDataFromPdfContent(pdf());
+
+        assertThat(result).isEqualTo(validExtraction());
+        assertThat(meterRegistry.counter("hoa.gemini.extraction.result", "result", "repaired").count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedRepairKeepsTheExtraction() throws Exception {
+        ObjectNode extraction = validExtraction();
+        extraction.remove("keywords");
+        respond(extraction);
+        responses.add(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build());
+
+        JsonNode result = geminiService.extractDataFromPdfContent(pdf());
+
+        assertThat(result).isEqualTo(extraction);
+    }
+
+    @Test
+    void validExtractionIsNotRepaired() throws Exception {
+        respond(validExtraction());
+
+        assertThat(geminiService.extractDataFromPdfContent(pdf())).isEqualTo(validExtraction());
+        assertThat(meterRegistry.counter("hoa.gemini.extraction.result", "result", "valid").count()).isEqualTo(1);
+    }
+
+    /**
+     * Queues a streamed answer with the JSON output split over two events, as Gemini sends it.
+     */
+    private void respond(JsonNode output) throws Exception {
+        String text = objectMapper.writeValueAsString(output);
+        int half = text.length() / 2;
+        String body = event(text.substring(0, half)) + event(text.substring(half));
+        responses.add(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+                .body(body)
+                .build());
+    }
+
+    private String event(String text) throws Exception {
+        ObjectNode chunk = objectMapper.createObjectNode();
+        chunk.putArray("candidates").addObject().putObject("content").putArray("parts").addObject().put("text", text);
+        return "data: " + objectMapper.writeValueAsString(chunk) + "\n\n";
+    }
+
+    private PdfContent pdf() {
+        return PdfContent.inMemory("%PDF-1.7".getBytes(StandardCharsets.US_ASCII), null);
+    }
+
+    private ObjectNode validExtraction() throws Exception {
+        return (ObjectNode) objectMapper.readTree("""
+                {
+                  "title": "Annual report 2022",
+                  "association": "BRF Eken",
+                  "auditor": "Karin Lund",
+                  "summary": "A year of renovations.",
+                  "keywords": ["roof", "windows"],
+                  "board_members": [{"name": "Anna Berg", "role": "Chair"}],
+                  "financial_year": "2021-2022",
+                  "loans": [{"debt": "1 000 000 kr", "interrest_rate": "1.5%"}]
+                }
+                """);
+    }
+}